@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.jaxrs.webhook.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import net.ltgt.jaxrs.webhook.SignatureAlgorithm;
+import net.ltgt.jaxrs.webhook.Util;
+
+/** Reproducible payloads and secrets for the benchmarks. */
+class BenchmarkData {
+  private static final long SEED = 42;
+
+  static byte[] payload(int size) {
+    byte[] payload = new byte[size];
+    new Random(SEED).nextBytes(payload);
+    return payload;
+  }
+
+  static byte[][] secrets(int count) {
+    byte[][] secrets = new byte[count][];
+    for (int i = 0; i < count; i++) {
+      secrets[i] = ("This is secret #" + i).getBytes(StandardCharsets.UTF_8);
+    }
+    return secrets;
+  }
+
+  /** Computes the signature header values of the payload for each secret. */
+  static String[] signatures(SignatureAlgorithm algorithm, byte[][] secrets, byte[] payload)
+      throws Exception {
+    String[] signatures = new String[secrets.length];
+    for (int i = 0; i < secrets.length; i++) {
+      Mac mac = Mac.getInstance(algorithm.getMacAlgorithm());
+      mac.init(new SecretKeySpec(secrets[i], algorithm.getMacAlgorithm()));
+      signatures[i] = Util.hex(algorithm.getPrefix(), mac.doFinal(payload));
+    }
+    return signatures;
+  }
+
+  private BenchmarkData() {
+    // non-instantiable
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.jaxrs.webhook.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import net.ltgt.jaxrs.webhook.SignatureAlgorithm;
+import net.ltgt.jaxrs.webhook.client.WebhookSignatureFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link WebhookSignatureFilter#aroundWriteTo} on the client side, for various payload
+ * sizes and numbers of secrets (each request being signed with the next secret in turn).
+ *
+ * <p>Use JMH's {@code -t} option to vary the number of threads, and {@code -prof gc} to report
+ * allocation rates; e.g. {@code java -jar target/benchmarks.jar ClientSignatureBenchmark -t 4 -prof
+ * gc}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ClientSignatureBenchmark {
+  private static final String SECRET_PROPERTY = "secret";
+
+  @Param({"1024", "65536", "1048576", "52428800"})
+  int payloadSize;
+
+  @Param({"1", "100", "1000"})
+  int secretCount;
+
+  @Param({"SHA1", "SHA256"})
+  SignatureAlgorithm algorithm;
+
+  private byte[] payload;
+  private byte[][] secrets;
+  private WebhookSignatureFilter filter;
+
+  @Setup
+  public void setUp() {
+    payload = BenchmarkData.payload(payloadSize);
+    secrets = BenchmarkData.secrets(secretCount);
+    filter =
+        new WebhookSignatureFilter() {
+          @Override
+          protected byte[] getSecret(WriterInterceptorContext context) {
+            return (byte[]) context.getProperty(SECRET_PROPERTY);
+          }
+        };
+    filter.setAlgorithms(algorithm);
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    int next;
+
+    byte[] nextSecret(byte[][] secrets) {
+      byte[] secret = secrets[next];
+      next = (next + 1) % secrets.length;
+      return secret;
+    }
+  }
+
+  @Benchmark
+  public MultivaluedMap<String, Object> sign(ThreadState threadState) throws IOException {
+    FakeWriterInterceptorContext context = new FakeWriterInterceptorContext(payload);
+    context.setProperty(SECRET_PROPERTY, threadState.nextSecret(secrets));
+    filter.aroundWriteTo(context);
+    return context.getHeaders();
+  }
+}
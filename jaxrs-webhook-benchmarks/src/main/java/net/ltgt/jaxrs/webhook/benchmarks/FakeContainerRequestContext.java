@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.jaxrs.webhook.benchmarks;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.UriInfo;
+
+/** A {@link ContainerRequestContext} for a {@code POST} request with a given entity. */
+class FakeContainerRequestContext implements ContainerRequestContext {
+  private final Map<String, Object> properties = new HashMap<>();
+  private final MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+  private final int length;
+  private InputStream entityStream;
+  private Response abortResponse;
+
+  FakeContainerRequestContext(InputStream entityStream, int length) {
+    this.entityStream = entityStream;
+    this.length = length;
+  }
+
+  boolean isAborted() {
+    return abortResponse != null;
+  }
+
+  @Override
+  public Object getProperty(String name) {
+    return properties.get(name);
+  }
+
+  @Override
+  public Collection<String> getPropertyNames() {
+    return Collections.unmodifiableSet(properties.keySet());
+  }
+
+  @Override
+  public void setProperty(String name, Object object) {
+    properties.put(name, object);
+  }
+
+  @Override
+  public void removeProperty(String name) {
+    properties.remove(name);
+  }
+
+  @Override
+  public UriInfo getUriInfo() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setRequestUri(URI requestUri) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setRequestUri(URI baseUri, URI requestUri) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Request getRequest() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public String getMethod() {
+    return "POST";
+  }
+
+  @Override
+  public void setMethod(String method) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public MultivaluedMap<String, String> getHeaders() {
+    return headers;
+  }
+
+  @Override
+  public String getHeaderString(String name) {
+    List<String> values = headers.get(name);
+    if (values == null) {
+      return null;
+    }
+    StringBuilder sb = new StringBuilder();
+    for (String value : values) {
+      if (sb.length() > 0) {
+        sb.append(',');
+      }
+      sb.append(value);
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public Date getDate() {
+    return null;
+  }
+
+  @Override
+  public Locale getLanguage() {
+    return null;
+  }
+
+  @Override
+  public int getLength() {
+    return length;
+  }
+
+  @Override
+  public MediaType getMediaType() {
+    return MediaType.APPLICATION_OCTET_STREAM_TYPE;
+  }
+
+  @Override
+  public List<MediaType> getAcceptableMediaTypes() {
+    return Collections.singletonList(MediaType.WILDCARD_TYPE);
+  }
+
+  @Override
+  public List<Locale> getAcceptableLanguages() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public Map<String, Cookie> getCookies() {
+    return Collections.emptyMap();
+  }
+
+  @Override
+  public boolean hasEntity() {
+    return true;
+  }
+
+  @Override
+  public InputStream getEntityStream() {
+    return entityStream;
+  }
+
+  @Override
+  public void setEntityStream(InputStream input) {
+    this.entityStream = input;
+  }
+
+  @Override
+  public SecurityContext getSecurityContext() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void setSecurityContext(SecurityContext context) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void abortWith(Response response) {
+    this.abortResponse = response;
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.jaxrs.webhook.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * A {@link WriterInterceptorContext} whose {@link #proceed()} writes a {@code byte[]} entity, the
+ * way a {@code MessageBodyWriter} would, to an {@link OutputStream} discarding everything.
+ */
+class FakeWriterInterceptorContext implements WriterInterceptorContext {
+  private static final OutputStream NULL_OUTPUT_STREAM =
+      new OutputStream() {
+        @Override
+        public void write(int b) {}
+
+        @Override
+        public void write(byte[] b, int off, int len) {}
+      };
+
+  private final Map<String, Object> properties = new HashMap<>();
+  private final MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+  private Object entity;
+  private OutputStream outputStream = NULL_OUTPUT_STREAM;
+
+  FakeWriterInterceptorContext(byte[] entity) {
+    this.entity = entity;
+  }
+
+  @Override
+  public void proceed() throws IOException {
+    outputStream.write((byte[]) entity);
+  }
+
+  @Override
+  public Object getEntity() {
+    return entity;
+  }
+
+  @Override
+  public void setEntity(Object entity) {
+    this.entity = entity;
+  }
+
+  @Override
+  public OutputStream getOutputStream() {
+    return outputStream;
+  }
+
+  @Override
+  public void setOutputStream(OutputStream os) {
+    this.outputStream = os;
+  }
+
+  @Override
+  public MultivaluedMap<String, Object> getHeaders() {
+    return headers;
+  }
+
+  @Override
+  public Object getProperty(String name) {
+    return properties.get(name);
+  }
+
+  @Override
+  public Collection<String> getPropertyNames() {
+    return Collections.unmodifiableSet(properties.keySet());
+  }
+
+  @Override
+  public void setProperty(String name, Object object) {
+    properties.put(name, object);
+  }
+
+  @Override
+  public void removeProperty(String name) {
+    properties.remove(name);
+  }
+
+  @Override
+  public Annotation[] getAnnotations() {
+    return new Annotation[0];
+  }
+
+  @Override
+  public void setAnnotations(Annotation[] annotations) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Class<?> getType() {
+    return byte[].class;
+  }
+
+  @Override
+  public void setType(Class<?> type) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Type getGenericType() {
+    return byte[].class;
+  }
+
+  @Override
+  public void setGenericType(Type genericType) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public MediaType getMediaType() {
+    return MediaType.APPLICATION_OCTET_STREAM_TYPE;
+  }
+
+  @Override
+  public void setMediaType(MediaType mediaType) {
+    throw new UnsupportedOperationException();
+  }
+}
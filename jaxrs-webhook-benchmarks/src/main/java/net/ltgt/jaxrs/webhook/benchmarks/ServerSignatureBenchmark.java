@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.jaxrs.webhook.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.container.ContainerRequestContext;
+import net.ltgt.jaxrs.webhook.SignatureAlgorithm;
+import net.ltgt.jaxrs.webhook.server.WebhookSignatureFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link WebhookSignatureFilter#filter(ContainerRequestContext)} on the server side, for
+ * various payload sizes and numbers of secrets (each request being verified with the next secret in
+ * turn). All signatures are valid.
+ *
+ * <p>Use JMH's {@code -t} option to vary the number of threads, and {@code -prof gc} to report
+ * allocation rates; e.g. {@code java -jar target/benchmarks.jar ServerSignatureBenchmark -t 4 -prof
+ * gc}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ServerSignatureBenchmark {
+  private static final String SECRET_PROPERTY = "secret";
+
+  @Param({"1024", "65536", "1048576", "52428800"})
+  int payloadSize;
+
+  @Param({"1", "100", "1000"})
+  int secretCount;
+
+  @Param({"SHA1", "SHA256"})
+  SignatureAlgorithm algorithm;
+
+  private byte[] payload;
+  private byte[][] secrets;
+  private String[] signatures;
+  private WebhookSignatureFilter filter;
+
+  @Setup
+  public void setUp() throws Exception {
+    payload = BenchmarkData.payload(payloadSize);
+    secrets = BenchmarkData.secrets(secretCount);
+    signatures = BenchmarkData.signatures(algorithm, secrets, payload);
+    filter =
+        new WebhookSignatureFilter() {
+          @Override
+          protected byte[] getSecret(ContainerRequestContext requestContext) {
+            return (byte[]) requestContext.getProperty(SECRET_PROPERTY);
+          }
+        };
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    int next;
+
+    int nextIndex(int count) {
+      int index = next;
+      next = (next + 1) % count;
+      return index;
+    }
+  }
+
+  @Benchmark
+  public InputStream verify(ThreadState threadState) throws IOException {
+    int index = threadState.nextIndex(secrets.length);
+    FakeContainerRequestContext context =
+        new FakeContainerRequestContext(new ByteArrayInputStream(payload), payload.length);
+    context.setProperty(SECRET_PROPERTY, secrets[index]);
+    context.getHeaders().putSingle(algorithm.getHeader(), signatures[index]);
+    filter.filter(context);
+    if (context.isAborted()) {
+      throw new AssertionError("Signature verification failed");
+    }
+    return context.getEntityStream();
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.jaxrs.webhook;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import javax.crypto.Mac;
+
+/**
+ * Internal utility, please do not use.
+ *
+ * <p>Buffers an entity in a single array while computing its {@link Mac}, and gives it back as an
+ * {@link InputStream} without copying it.
+ *
+ * <p>Entities larger than a given threshold can be spooled to a temporary file rather than kept in
+ * memory. The file is deleted when the {@link #toInputStream() stream} is closed, or when the
+ * buffer is {@link #discard() discarded}.
+ */
+public class EntityBuffer {
+  private static final int DEFAULT_CAPACITY = 8192;
+  /** Do not trust the announced length past that size; grow the buffer as needed instead. */
+  private static final int MAX_INITIAL_CAPACITY = 8 * 1024 * 1024;
+
+  private final long spoolThreshold;
+  private final File spoolDirectory;
+
+  private byte[] buf;
+  private long count;
+  private Path file;
+
+  /**
+   * Constructs a buffer for an entity of the given expected length, kept in memory.
+   *
+   * @param expectedLength the expected length of the entity (e.g. from the {@code Content-Length}
+   *     header), or {@code -1} if unknown
+   */
+  public EntityBuffer(long expectedLength) {
+    this(expectedLength, -1, null);
+  }
+
+  /**
+   * Constructs a buffer for an entity of the given expected length, spooled to a temporary file
+   * past a given size.
+   *
+   * @param expectedLength the expected length of the entity (e.g. from the {@code Content-Length}
+   *     header), or {@code -1} if unknown
+   * @param spoolThreshold the size above which the entity is spooled to disk, or {@code -1} to
+   *     always keep it in memory
+   * @param spoolDirectory the directory where to create the temporary file, or {@code null} to use
+   *     the default temporary-file directory
+   */
+  public EntityBuffer(long expectedLength, long spoolThreshold, File spoolDirectory) {
+    this.spoolThreshold = spoolThreshold;
+    this.spoolDirectory = spoolDirectory;
+    long capacity = expectedLength < 0 ? DEFAULT_CAPACITY : expectedLength;
+    if (spoolThreshold >= 0) {
+      capacity = Math.min(capacity, spoolThreshold);
+    }
+    this.buf = new byte[(int) Math.min(capacity, MAX_INITIAL_CAPACITY)];
+  }
+
+  /** Reads the stream until its end, buffering its content and updating the {@code mac} with it. */
+  public void readFrom(InputStream in, Mac mac) throws IOException {
+    while (true) {
+      if (count == buf.length) {
+        // Check for EOF before growing the buffer, in case it was correctly sized.
+        int b = in.read();
+        if (b == -1) {
+          return;
+        }
+        mac.update((byte) b);
+        if (spoolThreshold >= 0 && count == spoolThreshold) {
+          spool(in, mac, b);
+          return;
+        }
+        buf = Arrays.copyOf(buf, newCapacity());
+        buf[(int) count] = (byte) b;
+        count++;
+      }
+      int r = in.read(buf, (int) count, buf.length - (int) count);
+      if (r == -1) {
+        return;
+      }
+      mac.update(buf, (int) count, r);
+      count += r;
+    }
+  }
+
+  private void spool(InputStream in, Mac mac, int firstByte) throws IOException {
+    file =
+        spoolDirectory == null
+            ? Files.createTempFile("webhook", ".tmp")
+            : Files.createTempFile(spoolDirectory.toPath(), "webhook", ".tmp");
+    try (OutputStream out = Files.newOutputStream(file)) {
+      out.write(buf, 0, (int) count);
+      out.write(firstByte);
+      count++;
+      // Reuse the memory buffer for the transfer if it's large enough
+      byte[] chunk = buf.length < DEFAULT_CAPACITY ? new byte[DEFAULT_CAPACITY] : buf;
+      buf = null;
+      while (true) {
+        int r = in.read(chunk);
+        if (r == -1) {
+          break;
+        }
+        mac.update(chunk, 0, r);
+        out.write(chunk, 0, r);
+        count += r;
+      }
+    } catch (IOException | RuntimeException e) {
+      try {
+        discard();
+      } catch (IOException suppressedExc) {
+        e.addSuppressed(suppressedExc);
+      }
+      throw e;
+    }
+  }
+
+  public long size() {
+    return count;
+  }
+
+  /** Returns whether the entity has been spooled to a temporary file. */
+  public boolean isSpooled() {
+    return file != null;
+  }
+
+  /**
+   * Returns an {@link InputStream} reading the buffered content.
+   *
+   * <p>If the entity has been spooled to a temporary file, the file will be deleted when the stream
+   * is closed.
+   */
+  public InputStream toInputStream() throws IOException {
+    if (file != null) {
+      return Files.newInputStream(file, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+    return new ByteArrayInputStream(buf, 0, (int) count);
+  }
+
+  /** Deletes the temporary file, if any. */
+  public void discard() throws IOException {
+    if (file != null) {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private int newCapacity() {
+    int newCapacity = Math.max(buf.length * 2, DEFAULT_CAPACITY);
+    if (spoolThreshold >= 0 && newCapacity > spoolThreshold) {
+      newCapacity = (int) spoolThreshold;
+    }
+    if (newCapacity < 0) {
+      if (buf.length == Integer.MAX_VALUE) {
+        throw new OutOfMemoryError();
+      }
+      newCapacity = Integer.MAX_VALUE;
+    }
+    return newCapacity;
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.jaxrs.webhook;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Internal utility, please do not use.
+ *
+ * <p>Caches {@link Mac} instances initialized with a given secret, so that each new instance is
+ * {@link Mac#clone() cloned} from them rather than looked up and initialized again. Secrets are
+ * compared by content, and the least recently used ones are evicted once the cache is full.
+ */
+public class MacCache {
+  private final String algorithm;
+  private final LruMap prototypes;
+
+  public MacCache(String algorithm, int maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("maxSize must be positive");
+    }
+    this.algorithm = algorithm;
+    this.prototypes = new LruMap(maxSize);
+  }
+
+  /** Creates one cache for each {@link SignatureAlgorithm}. */
+  public static Map<SignatureAlgorithm, MacCache> forAllAlgorithms(int maxSize) {
+    Map<SignatureAlgorithm, MacCache> macCaches = new EnumMap<>(SignatureAlgorithm.class);
+    for (SignatureAlgorithm algorithm : SignatureAlgorithm.values()) {
+      macCaches.put(algorithm, new MacCache(algorithm.getMacAlgorithm(), maxSize));
+    }
+    return macCaches;
+  }
+
+  /** Returns a new {@link Mac} initialized with the given secret. */
+  public Mac get(byte[] secret) {
+    Mac prototype;
+    synchronized (prototypes) {
+      prototype = prototypes.get(ByteBuffer.wrap(secret));
+    }
+    if (prototype != null) {
+      try {
+        return (Mac) prototype.clone();
+      } catch (CloneNotSupportedException e) {
+        // We only put cloneable instances in the cache
+        throw new AssertionError(e);
+      }
+    }
+
+    prototype = newMac(secret);
+    Mac mac;
+    try {
+      mac = (Mac) prototype.clone();
+    } catch (CloneNotSupportedException e) {
+      // Cannot be cached
+      return prototype;
+    }
+    synchronized (prototypes) {
+      // Copy the secret so the key cannot be modified by the caller
+      prototypes.put(ByteBuffer.wrap(secret.clone()), prototype);
+    }
+    return mac;
+  }
+
+  /** Returns the number of cached secrets. */
+  public int size() {
+    synchronized (prototypes) {
+      return prototypes.size();
+    }
+  }
+
+  private Mac newMac(byte[] secret) {
+    try {
+      Mac mac = Mac.getInstance(algorithm);
+      mac.init(new SecretKeySpec(secret, algorithm));
+      return mac;
+    } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+      // This shouldn't happen: HMAC algorithms are implemented by the JDK, and don't restrict their keys
+      throw new AssertionError(e);
+    }
+  }
+
+  private static class LruMap extends LinkedHashMap<ByteBuffer, Mac> {
+    private static final long serialVersionUID = 1L;
+
+    private final int maxSize;
+
+    LruMap(int maxSize) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Mac> eldest) {
+      return size() > maxSize;
+    }
+  }
+}
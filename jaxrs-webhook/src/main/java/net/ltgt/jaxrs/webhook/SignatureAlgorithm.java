@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.jaxrs.webhook;
+
+/**
+ * Algorithms used to sign webhook payloads.
+ *
+ * <p>Each algorithm comes with its own request header, so that a payload can be sent with several
+ * signatures at once; e.g. {@code X-Hub-Signature: sha1=…} and {@code X-Hub-Signature-256:
+ * sha256=…} as sent by GitHub.
+ *
+ * <p>Algorithms are declared from the weakest to the strongest.
+ */
+public enum SignatureAlgorithm {
+  /** HMAC-SHA1, in the {@code X-Hub-Signature} header. */
+  SHA1("HmacSHA1", "X-Hub-Signature", "sha1="),
+  /** HMAC-SHA256, in the {@code X-Hub-Signature-256} header. */
+  SHA256("HmacSHA256", "X-Hub-Signature-256", "sha256="),
+  /** HMAC-SHA512, in the {@code X-Hub-Signature-512} header. */
+  SHA512("HmacSHA512", "X-Hub-Signature-512", "sha512=");
+
+  private final String macAlgorithm;
+  private final String header;
+  private final String prefix;
+
+  SignatureAlgorithm(String macAlgorithm, String header, String prefix) {
+    this.macAlgorithm = macAlgorithm;
+    this.header = header;
+    this.prefix = prefix;
+  }
+
+  /** Returns the name of the {@link javax.crypto.Mac} algorithm. */
+  public String getMacAlgorithm() {
+    return macAlgorithm;
+  }
+
+  /** Returns the name of the request header carrying the signature. */
+  public String getHeader() {
+    return header;
+  }
+
+  /** Returns the prefix of the signature in the request header. */
+  public String getPrefix() {
+    return prefix;
+  }
+}
@@ -31,8 +31,16 @@ public class Util {
   private static final int BUF_SIZE = 8192;
 
   public static String hex(byte[] data) {
-    char[] result = new char[data.length * 2];
-    int c = 0;
+    return hex("", data);
+  }
+
+  /**
+   * Returns the {@code prefix} followed by the hex-encoded {@code data}, in a single allocation.
+   */
+  public static String hex(String prefix, byte[] data) {
+    char[] result = new char[prefix.length() + data.length * 2];
+    prefix.getChars(0, prefix.length(), result, 0);
+    int c = prefix.length();
     for (byte b : data) {
       result[c++] = HEX_DIGITS[(b >> 4) & 0xf];
       result[c++] = HEX_DIGITS[b & 0xf];
@@ -40,6 +48,44 @@ public class Util {
     return new String(result);
   }
 
+  /**
+   * Decodes the hex-encoded characters of {@code s} starting at {@code offset} into {@code dst}.
+   *
+   * <p>Decoding is case-insensitive. Returns {@code false} if those characters aren't exactly
+   * {@code dst.length} hex-encoded bytes, in which case the content of {@code dst} is undefined.
+   */
+  public static boolean unhex(String s, int offset, byte[] dst) {
+    if (s.length() - offset != dst.length * 2) {
+      return false;
+    }
+    for (int i = 0, c = offset; i < dst.length; i++) {
+      int hi = hexDigit(s.charAt(c++));
+      int lo = hexDigit(s.charAt(c++));
+      if (hi < 0 || lo < 0) {
+        return false;
+      }
+      dst[i] = (byte) ((hi << 4) | lo);
+    }
+    return true;
+  }
+
+  /**
+   * Returns the value of an ASCII hex digit, or {@code -1}; unlike {@link Character#digit(char,
+   * int)}, this doesn't accept non-ASCII digits.
+   */
+  private static int hexDigit(char c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    }
+    if (c >= 'a' && c <= 'f') {
+      return c - 'a' + 10;
+    }
+    if (c >= 'A' && c <= 'F') {
+      return c - 'A' + 10;
+    }
+    return -1;
+  }
+
   public static byte[] toByteArray(InputStream in) throws IOException {
     ByteArrayOutputStream out = new ByteArrayOutputStream();
     byte[] buf = new byte[BUF_SIZE];
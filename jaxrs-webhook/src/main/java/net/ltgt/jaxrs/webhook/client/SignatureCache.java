@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.jaxrs.webhook.client;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.core.MediaType;
+import net.ltgt.jaxrs.webhook.SignatureAlgorithm;
+
+/**
+ * Caches the signatures of entities, so that an entity sent several times with the same secret
+ * (e.g. the same event delivered to many subscribers) is only signed once. The entity is still
+ * serialized each time it's sent, by the same interceptors and message body writer, but without
+ * being buffered.
+ *
+ * <p>Entities are compared by identity, along with their media type: they <strong>MUST NOT</strong>
+ * be modified once sent, as long as they can be in the cache, and must be serialized to the same
+ * bytes each time.
+ *
+ * <p>Usage:
+ *
+ * <pre><code>
+ * WebhookSignatureFilter filter = new WebhookSignatureFilter("secret");
+ * filter.setSignatureCache(new SignatureCache(100, 1, TimeUnit.MINUTES));
+ * </code></pre>
+ *
+ * <p>A cache can be shared by several {@link WebhookSignatureFilter}s.
+ */
+public class SignatureCache {
+  private final long expireAfterNanos;
+  private final LruMap entries;
+
+  /**
+   * Constructs a cache of at most {@code maxSize} entities, each kept for at most {@code
+   * expireAfter} after having been put in the cache.
+   */
+  public SignatureCache(int maxSize, long expireAfter, TimeUnit unit) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("maxSize must be positive");
+    }
+    if (expireAfter <= 0) {
+      throw new IllegalArgumentException("expireAfter must be positive");
+    }
+    this.expireAfterNanos = unit.toNanos(expireAfter);
+    this.entries = new LruMap(maxSize);
+  }
+
+  /** Returns the number of cached entities, including those that have expired. */
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /** Removes all entities from the cache. */
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  Entry get(byte[] secret, Object entity, MediaType mediaType) {
+    Key key = new Key(ByteBuffer.wrap(secret), entity, mediaType);
+    synchronized (entries) {
+      Entry entry = entries.get(key);
+      if (entry != null && System.nanoTime() - entry.createdAt > expireAfterNanos) {
+        entries.remove(key);
+        return null;
+      }
+      return entry;
+    }
+  }
+
+  void put(
+      byte[] secret,
+      Object entity,
+      MediaType mediaType,
+      Map<SignatureAlgorithm, String> signatures) {
+    // Copy the secret so the key cannot be modified by the caller
+    Key key = new Key(ByteBuffer.wrap(secret.clone()), entity, mediaType);
+    Entry entry = new Entry(signatures, System.nanoTime());
+    synchronized (entries) {
+      entries.put(key, entry);
+    }
+  }
+
+  static class Entry {
+    /** Signature header values, by algorithm. */
+    final Map<SignatureAlgorithm, String> signatures;
+
+    final long createdAt;
+
+    Entry(Map<SignatureAlgorithm, String> signatures, long createdAt) {
+      this.signatures = signatures;
+      this.createdAt = createdAt;
+    }
+  }
+
+  private static class Key {
+    private final ByteBuffer secret;
+    private final Object entity;
+    private final MediaType mediaType;
+
+    Key(ByteBuffer secret, Object entity, MediaType mediaType) {
+      this.secret = secret;
+      this.entity = entity;
+      this.mediaType = mediaType;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return entity == other.entity
+          && secret.equals(other.secret)
+          && Objects.equals(mediaType, other.mediaType);
+    }
+
+    @Override
+    public int hashCode() {
+      return (System.identityHashCode(entity) * 31 + secret.hashCode()) * 31
+          + Objects.hashCode(mediaType);
+    }
+  }
+
+  private static class LruMap extends LinkedHashMap<Key, Entry> {
+    private static final long serialVersionUID = 1L;
+
+    private final int maxSize;
+
+    LruMap(int maxSize) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+      return size() > maxSize;
+    }
+  }
+}
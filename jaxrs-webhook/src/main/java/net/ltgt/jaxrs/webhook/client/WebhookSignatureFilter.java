@@ -20,17 +20,23 @@ import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
 import javax.annotation.Priority;
 import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import javax.ws.rs.ConstrainedTo;
 import javax.ws.rs.Priorities;
 import javax.ws.rs.RuntimeType;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.ext.WriterInterceptor;
 import javax.ws.rs.ext.WriterInterceptorContext;
+import net.ltgt.jaxrs.webhook.MacCache;
+import net.ltgt.jaxrs.webhook.SignatureAlgorithm;
 import net.ltgt.jaxrs.webhook.Util;
 
 /**
@@ -45,6 +51,10 @@ import net.ltgt.jaxrs.webhook.Util;
  *     .post(payload);
  * </code></pre>
  *
+ * <p>Other {@link SignatureAlgorithm signature algorithms} can be used with {@link
+ * #setAlgorithms(SignatureAlgorithm...)}, in which case one request header is computed for each
+ * algorithm, in a single pass over the request body.
+ *
  * @see <a
  *     href="https://pubsubhubbub.github.io/PubSubHubbub/pubsubhubbub-core-0.4.html#authednotify">
  *     PubSubHubbub's Authenticated Content Distribution</a>
@@ -52,8 +62,14 @@ import net.ltgt.jaxrs.webhook.Util;
 @ConstrainedTo(RuntimeType.CLIENT)
 @Priority(Priorities.HEADER_DECORATOR)
 public class WebhookSignatureFilter implements WriterInterceptor {
+  private static final int MAC_CACHE_SIZE = 100;
 
   private final byte[] secret;
+  private final Map<SignatureAlgorithm, MacCache> macCaches =
+      MacCache.forAllAlgorithms(MAC_CACHE_SIZE);
+
+  private SignatureAlgorithm[] algorithms = {SignatureAlgorithm.SHA1};
+  private SignatureCache signatureCache;
 
   public WebhookSignatureFilter(String secret) {
     if (secret.isEmpty()) {
@@ -73,10 +89,63 @@ public class WebhookSignatureFilter implements WriterInterceptor {
     this.secret = null;
   }
 
+  public Set<SignatureAlgorithm> getAlgorithms() {
+    return Collections.unmodifiableSet(EnumSet.copyOf(Arrays.asList(algorithms)));
+  }
+
+  /**
+   * Sets the algorithms used to sign the request body, each one computing its own request header.
+   *
+   * <p>Defaults to {@link SignatureAlgorithm#SHA1} only, i.e. the {@code X-Hub-Signature} request
+   * header.
+   */
+  public void setAlgorithms(SignatureAlgorithm... algorithms) {
+    if (algorithms.length == 0) {
+      throw new IllegalArgumentException("algorithms must not be empty");
+    }
+    // Remove duplicates
+    this.algorithms = EnumSet.copyOf(Arrays.asList(algorithms)).toArray(new SignatureAlgorithm[0]);
+  }
+
+  public SignatureCache getSignatureCache() {
+    return signatureCache;
+  }
+
+  /**
+   * Sets a cache to reuse the signature when the same entity is sent several times.
+   *
+   * <p>Defaults to {@code null}, meaning entities are signed each time they're sent.
+   */
+  public void setSignatureCache(SignatureCache signatureCache) {
+    this.signatureCache = signatureCache;
+  }
+
   protected byte[] getSecret(WriterInterceptorContext context) {
     return secret;
   }
 
+  /**
+   * Returns the expected size (in bytes) of the serialized entity, or {@code -1} if unknown.
+   *
+   * <p>This is used to size the buffer where the entity is serialized (to compute its signature)
+   * before it's sent. The default implementation returns the length of {@code byte[]} entities, or
+   * the value of the {@code Content-Length} request header if present.
+   */
+  protected int getExpectedSize(WriterInterceptorContext context) {
+    if (context.getEntity() instanceof byte[]) {
+      return ((byte[]) context.getEntity()).length;
+    }
+    Object contentLength = context.getHeaders().getFirst(HttpHeaders.CONTENT_LENGTH);
+    if (contentLength != null) {
+      try {
+        return Integer.parseInt(contentLength.toString());
+      } catch (NumberFormatException e) {
+        // ignore
+      }
+    }
+    return -1;
+  }
+
   @Override
   public void aroundWriteTo(WriterInterceptorContext context)
       throws IOException, WebApplicationException {
@@ -86,46 +155,73 @@ public class WebhookSignatureFilter implements WriterInterceptor {
       return;
     }
 
-    final SecretKeySpec secretKeySpec = new SecretKeySpec(secret, Util.ALGORITHM);
-    final Mac mac;
-    try {
-      mac = Mac.getInstance(Util.ALGORITHM);
-      mac.init(secretKeySpec);
-    } catch (NoSuchAlgorithmException | InvalidKeyException e) {
-      // This shouldn't happen: HmacSHA1 is a mandatory-to-implement algorithm, and doesn't restrict its keys
-      throw new AssertionError(e);
+    SignatureAlgorithm[] algorithms = this.algorithms;
+    SignatureCache signatureCache = this.signatureCache;
+    if (signatureCache != null) {
+      SignatureCache.Entry cached =
+          signatureCache.get(secret, context.getEntity(), context.getMediaType());
+      if (cached != null && cached.signatures.keySet().containsAll(Arrays.asList(algorithms))) {
+        for (SignatureAlgorithm algorithm : algorithms) {
+          context.getHeaders().putSingle(algorithm.getHeader(), cached.signatures.get(algorithm));
+        }
+        // Still let the entity be written by the following interceptors and message body writer,
+        // only without buffering it.
+        context.proceed();
+        return;
+      }
     }
 
-    // We need to buffer all the output to be able to add the header
+    final Mac[] macs = new Mac[algorithms.length];
+    for (int i = 0; i < algorithms.length; i++) {
+      macs[i] = macCaches.get(algorithms[i]).get(secret);
+    }
+
+    // We need to buffer all the output to be able to add the headers
     OutputStream realOut = context.getOutputStream();
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    int expectedSize = getExpectedSize(context);
+    ByteArrayOutputStream baos =
+        expectedSize < 0 ? new ByteArrayOutputStream() : new ByteArrayOutputStream(expectedSize);
     context.setOutputStream(
         new FilterOutputStream(baos) {
           @Override
           public void write(int b) throws IOException {
-            mac.update((byte) b);
+            for (Mac mac : macs) {
+              mac.update((byte) b);
+            }
             out.write(b);
           }
 
           @Override
           public void write(byte[] b) throws IOException {
-            mac.update(b);
+            for (Mac mac : macs) {
+              mac.update(b);
+            }
             out.write(b);
           }
 
           @Override
           public void write(byte[] b, int off, int len) throws IOException {
-            mac.update(b, off, len);
+            for (Mac mac : macs) {
+              mac.update(b, off, len);
+            }
             out.write(b, off, len);
           }
         });
 
     context.proceed();
 
-    byte[] signature = mac.doFinal();
-    context.getHeaders().putSingle(Util.HEADER, Util.PREFIX + Util.hex(signature));
+    Map<SignatureAlgorithm, String> signatures = new EnumMap<>(SignatureAlgorithm.class);
+    for (int i = 0; i < algorithms.length; i++) {
+      String header = Util.hex(algorithms[i].getPrefix(), macs[i].doFinal());
+      context.getHeaders().putSingle(algorithms[i].getHeader(), header);
+      signatures.put(algorithms[i], header);
+    }
 
-    realOut.write(baos.toByteArray());
+    baos.writeTo(realOut);
+
+    if (signatureCache != null) {
+      signatureCache.put(secret, context.getEntity(), context.getMediaType(), signatures);
+    }
 
     baos = null;
   }
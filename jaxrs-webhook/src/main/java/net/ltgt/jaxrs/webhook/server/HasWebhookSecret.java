@@ -22,7 +22,8 @@ package net.ltgt.jaxrs.webhook.server;
 public interface HasWebhookSecret {
   /**
    * Returns the webhook secret to use to compute the payload signature (before comparing it with
-   * the signature received in the {@code X-Hub-Signature} header.)
+   * the signature received in the {@code X-Hub-Signature} header, or the one corresponding to
+   * another {@link net.ltgt.jaxrs.webhook.SignatureAlgorithm}.)
    */
   byte[] getWebhookSecret();
 }
@@ -15,40 +15,77 @@
  */
 package net.ltgt.jaxrs.webhook.server;
 
-import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.annotation.Priority;
 import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import javax.ws.rs.Priorities;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import net.ltgt.jaxrs.webhook.EntityBuffer;
+import net.ltgt.jaxrs.webhook.MacCache;
+import net.ltgt.jaxrs.webhook.SignatureAlgorithm;
 import net.ltgt.jaxrs.webhook.Util;
 
 /**
  * Validates an incoming {@code X-Hub-Signature} request header against the request body and a
  * shared secret.
  *
+ * <p>Other {@link SignatureAlgorithm signature algorithms} are also accepted, each in its own
+ * request header (e.g. {@code X-Hub-Signature-256}). When several signatures are sent, only the one
+ * using the strongest algorithm is validated. The accepted algorithms can be restricted with {@link
+ * #setAlgorithms(SignatureAlgorithm...)}.
+ *
  * <p>The secret can either be given to the filter constructor, or retrieved from the {@link
  * UriInfo#getMatchedResources() matched resource} which must then implement {@link
  * HasWebhookSecret}. Alternatively, the filter can be subclassed and the {@link
  * #getSecret(ContainerRequestContext)} method overridden.
  *
  * <p>The filter will only apply to resources annotated with {@link Webhook}.
+ *
+ * <p>The request body is buffered in memory to compute its signature before the resource reads it.
+ * Large bodies can be spooled to a temporary file instead by {@link #setSpoolThreshold(long)
+ * setting a threshold}; the file is deleted once the response has been written (this is why this
+ * class is also a {@link WriterInterceptor}, and a {@link ContainerResponseFilter} for responses
+ * without entity), or when the resource closes the entity stream.
  */
 @Provider
 @Priority(Priorities.AUTHORIZATION)
 @Webhook
-public class WebhookSignatureFilter implements ContainerRequestFilter {
+public class WebhookSignatureFilter
+    implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+
+  /** Maximum number of distinct secrets for which an initialized {@link Mac} is kept around. */
+  private static final int MAC_CACHE_SIZE = 100;
+
+  private static final String SPOOLED_ENTITY_PROPERTY =
+      WebhookSignatureFilter.class.getName() + ".spooledEntity";
 
   private final byte[] secret;
+  private final Map<SignatureAlgorithm, MacCache> macCaches =
+      MacCache.forAllAlgorithms(MAC_CACHE_SIZE);
+
+  private SignatureAlgorithm[] algorithms = SignatureAlgorithm.values();
+
+  private long spoolThreshold = -1;
+  private File spoolDirectory;
 
   /**
    * Constructs a {@link WebhookSignatureFilter} that will ask the {@link
@@ -86,9 +123,55 @@ public class WebhookSignatureFilter implements ContainerRequestFilter {
     this.secret = secret;
   }
 
+  public Set<SignatureAlgorithm> getAlgorithms() {
+    return Collections.unmodifiableSet(EnumSet.copyOf(Arrays.asList(algorithms)));
+  }
+
+  /**
+   * Sets the accepted signature algorithms.
+   *
+   * <p>Defaults to all {@link SignatureAlgorithm}s.
+   */
+  public void setAlgorithms(SignatureAlgorithm... algorithms) {
+    if (algorithms.length == 0) {
+      throw new IllegalArgumentException("algorithms must not be empty");
+    }
+    // Sort from the weakest to the strongest, and remove duplicates.
+    this.algorithms = EnumSet.copyOf(Arrays.asList(algorithms)).toArray(new SignatureAlgorithm[0]);
+  }
+
+  public long getSpoolThreshold() {
+    return spoolThreshold;
+  }
+
+  /**
+   * Sets the size (in bytes) above which request bodies are spooled to a temporary file rather than
+   * buffered in memory.
+   *
+   * <p>Defaults to {@code -1}, meaning request bodies are always buffered in memory.
+   */
+  public void setSpoolThreshold(long spoolThreshold) {
+    this.spoolThreshold = spoolThreshold;
+  }
+
+  public File getSpoolDirectory() {
+    return spoolDirectory;
+  }
+
+  /**
+   * Sets the directory where request bodies are spooled when larger than the {@link
+   * #setSpoolThreshold(long) threshold}.
+   *
+   * <p>Defaults to {@code null}, meaning the default temporary-file directory is used.
+   */
+  public void setSpoolDirectory(File spoolDirectory) {
+    this.spoolDirectory = spoolDirectory;
+  }
+
   /**
    * Returns the secret to use for computing the signature of the request body (before comparing it
-   * with the one sent in the {@code X-Hub-Signature} request header).
+   * with the one sent in the {@code X-Hub-Signature} request header, or the header corresponding to
+   * the strongest {@link SignatureAlgorithm} sent).
    *
    * <p>The default implementation will either return the fixed secret if one has been set through
    * the constructor, or cast the {@link UriInfo#getMatchedResources() matched resource} to {@link
@@ -109,37 +192,81 @@ public class WebhookSignatureFilter implements ContainerRequestFilter {
       throw new IllegalStateException("Webhook secret may not be null or empty");
     }
 
-    List<String> expectedSignatures = requestContext.getHeaders().get(Util.HEADER);
+    // Look for the strongest signature
+    SignatureAlgorithm algorithm = null;
+    List<String> expectedSignatures = null;
+    for (int i = algorithms.length - 1; i >= 0; i--) {
+      expectedSignatures = requestContext.getHeaders().get(algorithms[i].getHeader());
+      if (expectedSignatures != null) {
+        algorithm = algorithms[i];
+        break;
+      }
+    }
     if (expectedSignatures == null || expectedSignatures.size() != 1) {
       requestContext.abortWith(Response.status(Response.Status.BAD_REQUEST).build());
       return;
     }
     String expectedSignature = expectedSignatures.get(0);
-    if (!expectedSignature.startsWith(Util.PREFIX)) {
+    if (!expectedSignature.startsWith(algorithm.getPrefix())) {
       requestContext.abortWith(Response.status(Response.Status.BAD_REQUEST).build());
       return;
     }
-    expectedSignature = expectedSignature.substring(Util.PREFIX.length());
 
-    final SecretKeySpec secretKeySpec = new SecretKeySpec(secret, Util.ALGORITHM);
-    final Mac mac;
-    try {
-      mac = Mac.getInstance(Util.ALGORITHM);
-      mac.init(secretKeySpec);
-    } catch (NoSuchAlgorithmException | InvalidKeyException e) {
-      // This shouldn't happen: HmacSHA1 is a mandatory-to-implement algorithm, and doesn't restrict its keys
-      throw new AssertionError(e);
-    }
+    Mac mac = macCaches.get(algorithm).get(secret);
+
+    // A malformed signature is handled the same as an invalid one, after having read the entity.
+    byte[] expected = new byte[mac.getMacLength()];
+    boolean wellFormed = Util.unhex(expectedSignature, algorithm.getPrefix().length(), expected);
 
-    byte[] bytes = Util.toByteArray(requestContext.getEntityStream());
+    EntityBuffer buffer =
+        new EntityBuffer(requestContext.getLength(), spoolThreshold, spoolDirectory);
+    buffer.readFrom(requestContext.getEntityStream(), mac);
 
-    byte[] actualSignature = mac.doFinal(bytes);
-    if (!expectedSignature.equalsIgnoreCase(Util.hex(actualSignature))) {
+    byte[] actual = mac.doFinal();
+    // Use a constant-time comparison to avoid timing attacks.
+    if (!wellFormed || !MessageDigest.isEqual(expected, actual)) {
+      buffer.discard();
       // Return a 200 (OK) per spec.
       requestContext.abortWith(Response.ok().build());
       return;
     }
 
-    requestContext.setEntityStream(new ByteArrayInputStream(bytes));
+    InputStream entityStream = buffer.toInputStream();
+    if (buffer.isSpooled()) {
+      requestContext.setProperty(SPOOLED_ENTITY_PROPERTY, entityStream);
+    }
+    requestContext.setEntityStream(entityStream);
+  }
+
+  @Override
+  public void filter(
+      ContainerRequestContext requestContext, ContainerResponseContext responseContext)
+      throws IOException {
+    // Response entities are written after response filters have run, and could still read the
+    // request entity (e.g. a StreamingOutput), so only close it now if there's nothing to write.
+    if (!responseContext.hasEntity()) {
+      InputStream spooledEntity = (InputStream) requestContext.getProperty(SPOOLED_ENTITY_PROPERTY);
+      requestContext.removeProperty(SPOOLED_ENTITY_PROPERTY);
+      closeSpooledEntity(spooledEntity);
+    }
+  }
+
+  @Override
+  public void aroundWriteTo(WriterInterceptorContext context)
+      throws IOException, WebApplicationException {
+    try {
+      context.proceed();
+    } finally {
+      InputStream spooledEntity = (InputStream) context.getProperty(SPOOLED_ENTITY_PROPERTY);
+      context.removeProperty(SPOOLED_ENTITY_PROPERTY);
+      closeSpooledEntity(spooledEntity);
+    }
+  }
+
+  /** Makes sure the temporary file is deleted, even if the resource didn't close the stream. */
+  private static void closeSpooledEntity(InputStream spooledEntity) throws IOException {
+    if (spooledEntity != null) {
+      spooledEntity.close();
+    }
   }
 }
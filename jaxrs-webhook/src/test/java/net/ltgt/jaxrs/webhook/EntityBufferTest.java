@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.jaxrs.webhook;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import javax.crypto.Mac;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EntityBufferTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static final byte[] SECRET = "This is a secret".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] PAYLOAD =
+      "This is the request payload".getBytes(StandardCharsets.UTF_8);
+  private static final String SIGNATURE = "3daba1f18d85905076a8ed72caf13565ece571fb";
+
+  @Test
+  public void testExpectedLength() throws Exception {
+    assertBuffered(PAYLOAD.length, PAYLOAD, SIGNATURE);
+  }
+
+  @Test
+  public void testUnknownLength() throws Exception {
+    assertBuffered(-1, PAYLOAD, SIGNATURE);
+  }
+
+  @Test
+  public void testWrongExpectedLength() throws Exception {
+    assertBuffered(PAYLOAD.length - 3, PAYLOAD, SIGNATURE);
+    assertBuffered(PAYLOAD.length + 3, PAYLOAD, SIGNATURE);
+  }
+
+  @Test
+  public void testLargePayload() throws Exception {
+    byte[] payload = new byte[100000];
+    new Random().nextBytes(payload);
+    String signature = Util.hex(new MacCache(Util.ALGORITHM, 1).get(SECRET).doFinal(payload));
+
+    assertBuffered(-1, payload, signature);
+  }
+
+  @Test
+  public void testSpooledPayload() throws Exception {
+    File spoolDirectory = temporaryFolder.newFolder();
+    byte[] payload = new byte[100000];
+    new Random().nextBytes(payload);
+    String signature = Util.hex(new MacCache(Util.ALGORITHM, 1).get(SECRET).doFinal(payload));
+
+    for (long spoolThreshold : new long[] {0, 10, 8192, 50000, payload.length - 1}) {
+      Mac mac = new MacCache(Util.ALGORITHM, 1).get(SECRET);
+      EntityBuffer buffer = new EntityBuffer(-1, spoolThreshold, spoolDirectory);
+      buffer.readFrom(new ByteArrayInputStream(payload), mac);
+
+      assertThat(Util.hex(mac.doFinal())).isEqualTo(signature);
+      assertThat(buffer.isSpooled()).isTrue();
+      assertThat(buffer.size()).isEqualTo(payload.length);
+      assertThat(spoolDirectory.list()).hasSize(1);
+      try (InputStream in = buffer.toInputStream()) {
+        assertThat(Util.toByteArray(in)).isEqualTo(payload);
+      }
+      assertThat(spoolDirectory.list()).isEmpty();
+    }
+  }
+
+  @Test
+  public void testPayloadBelowSpoolThreshold() throws Exception {
+    Mac mac = new MacCache(Util.ALGORITHM, 1).get(SECRET);
+    EntityBuffer buffer = new EntityBuffer(-1, PAYLOAD.length, temporaryFolder.getRoot());
+    buffer.readFrom(new ByteArrayInputStream(PAYLOAD), mac);
+
+    assertThat(Util.hex(mac.doFinal())).isEqualTo(SIGNATURE);
+    assertThat(buffer.isSpooled()).isFalse();
+    assertThat(Util.toByteArray(buffer.toInputStream())).isEqualTo(PAYLOAD);
+  }
+
+  private void assertBuffered(long expectedLength, byte[] payload, String signature)
+      throws Exception {
+    Mac mac = new MacCache(Util.ALGORITHM, 1).get(SECRET);
+    EntityBuffer buffer = new EntityBuffer(expectedLength);
+    buffer.readFrom(new ByteArrayInputStream(payload), mac);
+
+    assertThat(Util.hex(mac.doFinal())).isEqualTo(signature);
+    assertThat(buffer.size()).isEqualTo(payload.length);
+    assertThat(Util.toByteArray(buffer.toInputStream())).isEqualTo(payload);
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.jaxrs.webhook;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import javax.crypto.Mac;
+import org.junit.Test;
+
+public class MacCacheTest {
+
+  private static final byte[] PAYLOAD =
+      "This is the request payload".getBytes(StandardCharsets.UTF_8);
+  private static final String SIGNATURE = "3daba1f18d85905076a8ed72caf13565ece571fb";
+
+  @Test
+  public void testReusesInitializedMac() {
+    MacCache cache = new MacCache(Util.ALGORITHM, 2);
+    byte[] secret = "This is a secret".getBytes(StandardCharsets.UTF_8);
+
+    Mac first = cache.get(secret);
+    // Mutating the secret must not affect the cache
+    secret[0] = 'X';
+    Mac second = cache.get("This is a secret".getBytes(StandardCharsets.UTF_8));
+
+    assertThat(second).isNotSameAs(first);
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(Util.hex(first.doFinal(PAYLOAD))).isEqualTo(SIGNATURE);
+    assertThat(Util.hex(second.doFinal(PAYLOAD))).isEqualTo(SIGNATURE);
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsedSecrets() {
+    MacCache cache = new MacCache(Util.ALGORITHM, 2);
+
+    cache.get(new byte[] {1});
+    cache.get(new byte[] {2});
+    cache.get(new byte[] {1});
+    cache.get(new byte[] {3});
+
+    assertThat(cache.size()).isEqualTo(2);
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.jaxrs.webhook;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.Test;
+
+public class UtilTest {
+
+  private static final byte[] DATA = {0x00, 0x1f, (byte) 0xa0, (byte) 0xff};
+
+  @Test
+  public void testHex() {
+    assertThat(Util.hex(DATA)).isEqualTo("001fa0ff");
+    assertThat(Util.hex("sha1=", DATA)).isEqualTo("sha1=001fa0ff");
+  }
+
+  @Test
+  public void testUnhex() {
+    byte[] dst = new byte[DATA.length];
+    assertThat(Util.unhex("sha1=001fa0ff", 5, dst)).isTrue();
+    assertThat(dst).isEqualTo(DATA);
+
+    dst = new byte[DATA.length];
+    assertThat(Util.unhex("001FA0FF", 0, dst)).isTrue();
+    assertThat(dst).isEqualTo(DATA);
+  }
+
+  @Test
+  public void testUnhexMalformed() {
+    byte[] dst = new byte[DATA.length];
+    assertThat(Util.unhex("001fa0f", 0, dst)).isFalse();
+    assertThat(Util.unhex("001fa0ff00", 0, dst)).isFalse();
+    assertThat(Util.unhex("001fa0fg", 0, dst)).isFalse();
+    // Non-ASCII digits: ARABIC-INDIC DIGIT ZERO and FULLWIDTH LATIN SMALL LETTER F
+    assertThat(Util.unhex("001fa0f\u0660", 0, dst)).isFalse();
+    assertThat(Util.unhex("001fa0f\uff46", 0, dst)).isFalse();
+  }
+}
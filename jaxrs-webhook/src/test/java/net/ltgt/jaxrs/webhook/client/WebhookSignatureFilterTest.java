@@ -17,16 +17,25 @@ package net.ltgt.jaxrs.webhook.client;
 
 import static org.assertj.core.api.Assertions.*;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.Priorities;
 import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import net.ltgt.jaxrs.webhook.SignatureAlgorithm;
 import net.ltgt.jaxrs.webhook.Util;
 import net.ltgt.resteasy.testing.InProcessResteasy;
 import org.junit.Before;
@@ -39,6 +48,11 @@ public class WebhookSignatureFilterTest {
   private static final byte[] PAYLOAD =
       "This is the request payload".getBytes(StandardCharsets.UTF_8);
   private static final String SIGNATURE = "3daba1f18d85905076a8ed72caf13565ece571fb";
+  private static final String SHA256_SIGNATURE =
+      "ec334abdcc63461da612e085b07116bd0a1eb09c535507221b2aef4140182b74";
+  private static final String SHA512_SIGNATURE =
+      "01b5797258716bb7e9dfba2d782c0e7375d84559fc53c97a96f0da11cadd860b"
+          + "35134f824d9876b74d008e69b0c30e05a372f2c4478742d002dda2cc14710b3d";
 
   @Rule public InProcessResteasy resteasy = new InProcessResteasy();
 
@@ -64,6 +78,97 @@ public class WebhookSignatureFilterTest {
         .isEqualToIgnoringCase(Util.PREFIX + SIGNATURE);
   }
 
+  @Test
+  public void testWebhookSignatureWithUnknownSize() {
+    Response response =
+        resteasy
+            .getClient()
+            .register(new WebhookSignatureFilter(SECRET))
+            .target(resteasy.getBaseUriBuilder().path(DummyResource.class))
+            .request()
+            .post(
+                Entity.entity(
+                    new String(PAYLOAD, StandardCharsets.UTF_8),
+                    MediaType.APPLICATION_OCTET_STREAM_TYPE));
+
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    String signature = response.readEntity(String.class);
+    assertThat(signature)
+        .startsWith(Util.PREFIX) // the prefix is case-sensitive
+        .isEqualToIgnoringCase(Util.PREFIX + SIGNATURE);
+  }
+
+  @Test
+  public void testMultipleAlgorithms() {
+    WebhookSignatureFilter filter = new WebhookSignatureFilter(SECRET);
+    filter.setAlgorithms(SignatureAlgorithm.SHA256, SignatureAlgorithm.SHA512);
+    Response response =
+        resteasy
+            .getClient()
+            .register(filter)
+            .target(resteasy.getBaseUriBuilder().path(DummyResource.class).path("all"))
+            .request()
+            .post(Entity.entity(PAYLOAD, MediaType.APPLICATION_OCTET_STREAM_TYPE));
+
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    String signatures = response.readEntity(String.class);
+    assertThat(signatures.split("\n"))
+        .containsExactly(
+            "null",
+            SignatureAlgorithm.SHA256.getPrefix() + SHA256_SIGNATURE,
+            SignatureAlgorithm.SHA512.getPrefix() + SHA512_SIGNATURE);
+  }
+
+  @Test
+  public void testSignatureCache() {
+    final AtomicInteger signings = new AtomicInteger();
+    final AtomicInteger serializations = new AtomicInteger();
+    WebhookSignatureFilter filter =
+        new WebhookSignatureFilter(SECRET) {
+          @Override
+          protected int getExpectedSize(WriterInterceptorContext context) {
+            // Only called when signing the entity
+            signings.incrementAndGet();
+            return super.getExpectedSize(context);
+          }
+        };
+    filter.setSignatureCache(new SignatureCache(10, 1, TimeUnit.MINUTES));
+    WebTarget target =
+        resteasy
+            .getClient()
+            .register(filter)
+            .register(
+                new WriterInterceptor() {
+                  @Override
+                  public void aroundWriteTo(WriterInterceptorContext context)
+                      throws IOException, WebApplicationException {
+                    serializations.incrementAndGet();
+                    context.proceed();
+                  }
+                },
+                Priorities.USER)
+            .target(resteasy.getBaseUriBuilder().path(DummyResource.class));
+
+    Entity<byte[]> entity = Entity.entity(PAYLOAD, MediaType.APPLICATION_OCTET_STREAM_TYPE);
+    for (int i = 0; i < 3; i++) {
+      Response response = target.request().post(entity);
+
+      assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+      assertThat(response.readEntity(String.class)).isEqualToIgnoringCase(Util.PREFIX + SIGNATURE);
+    }
+    assertThat(signings.get()).isEqualTo(1);
+    // Following interceptors are still called
+    assertThat(serializations.get()).isEqualTo(3);
+
+    // Another (equal) entity is signed again
+    Response response =
+        target.request().post(Entity.entity(PAYLOAD.clone(), MediaType.APPLICATION_OCTET_STREAM));
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    assertThat(response.readEntity(String.class)).isEqualToIgnoringCase(Util.PREFIX + SIGNATURE);
+    assertThat(signings.get()).isEqualTo(2);
+    assertThat(serializations.get()).isEqualTo(4);
+  }
+
   @Path("/")
   public static class DummyResource {
     @POST
@@ -73,5 +178,18 @@ public class WebhookSignatureFilterTest {
       assertThat(payload).isEqualTo(PAYLOAD);
       return headers.getHeaderString(Util.HEADER);
     }
+
+    @POST
+    @Path("all")
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    @Produces(MediaType.TEXT_PLAIN)
+    public String echoAllSignatures(@Context HttpHeaders headers, byte[] payload) {
+      assertThat(payload).isEqualTo(PAYLOAD);
+      StringBuilder sb = new StringBuilder();
+      for (SignatureAlgorithm algorithm : SignatureAlgorithm.values()) {
+        sb.append(headers.getHeaderString(algorithm.getHeader())).append('\n');
+      }
+      return sb.toString();
+    }
   }
 }
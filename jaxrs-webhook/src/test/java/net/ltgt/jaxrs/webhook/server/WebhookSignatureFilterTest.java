@@ -17,7 +17,12 @@ package net.ltgt.jaxrs.webhook.server;
 
 import static org.assertj.core.api.Assertions.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Locale;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
@@ -26,10 +31,13 @@ import javax.ws.rs.client.Entity;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import net.ltgt.jaxrs.webhook.SignatureAlgorithm;
 import net.ltgt.jaxrs.webhook.Util;
 import net.ltgt.resteasy.testing.InProcessResteasy;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class WebhookSignatureFilterTest {
 
@@ -37,8 +45,11 @@ public class WebhookSignatureFilterTest {
   private static final byte[] PAYLOAD =
       "This is the request payload".getBytes(StandardCharsets.UTF_8);
   private static final String SIGNATURE = "3daba1f18d85905076a8ed72caf13565ece571fb";
+  private static final String SHA256_SIGNATURE =
+      "ec334abdcc63461da612e085b07116bd0a1eb09c535507221b2aef4140182b74";
 
   @Rule public InProcessResteasy resteasy = new InProcessResteasy();
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
   @Test
   public void testValidSignatureWithSecretFromResource() {
@@ -106,6 +117,152 @@ public class WebhookSignatureFilterTest {
     assertThat(payload).isEqualTo(PAYLOAD);
   }
 
+  @Test
+  public void testValidSignatureWithSpooledEntity() throws Exception {
+    File spoolDirectory = temporaryFolder.newFolder();
+    WebhookSignatureFilter filter = new WebhookSignatureFilter(SECRET);
+    filter.setSpoolThreshold(PAYLOAD.length / 2);
+    filter.setSpoolDirectory(spoolDirectory);
+    resteasy.getDeployment().getRegistry().addPerRequestResource(DummyResource.class);
+    resteasy.getDeployment().getProviderFactory().register(filter);
+
+    Response response =
+        resteasy
+            .getClient()
+            .target(resteasy.getBaseUriBuilder().path(DummyResource.class))
+            .request()
+            .header(Util.HEADER, Util.PREFIX + SIGNATURE)
+            .post(Entity.entity(PAYLOAD, MediaType.APPLICATION_OCTET_STREAM_TYPE));
+
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    byte[] payload = response.readEntity(byte[].class);
+    assertThat(payload).isEqualTo(PAYLOAD);
+    assertThat(spoolDirectory.list()).isEmpty();
+  }
+
+  @Test
+  public void testValidSignatureWithSpooledEntityReadByStreamingOutput() throws Exception {
+    File spoolDirectory = temporaryFolder.newFolder();
+    WebhookSignatureFilter filter = new WebhookSignatureFilter(SECRET);
+    filter.setSpoolThreshold(PAYLOAD.length / 2);
+    filter.setSpoolDirectory(spoolDirectory);
+    resteasy.getDeployment().getRegistry().addPerRequestResource(StreamingResource.class);
+    resteasy.getDeployment().getProviderFactory().register(filter);
+
+    Response response =
+        resteasy
+            .getClient()
+            .target(resteasy.getBaseUriBuilder().path(StreamingResource.class))
+            .request()
+            .header(Util.HEADER, Util.PREFIX + SIGNATURE)
+            .post(Entity.entity(PAYLOAD, MediaType.APPLICATION_OCTET_STREAM_TYPE));
+
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    byte[] payload = response.readEntity(byte[].class);
+    assertThat(payload).isEqualTo(PAYLOAD);
+    assertThat(spoolDirectory.list()).isEmpty();
+  }
+
+  @Test
+  public void testInvalidSignatureWithSpooledEntity() throws Exception {
+    File spoolDirectory = temporaryFolder.newFolder();
+    WebhookSignatureFilter filter = new WebhookSignatureFilter(SECRET);
+    filter.setSpoolThreshold(PAYLOAD.length / 2);
+    filter.setSpoolDirectory(spoolDirectory);
+    resteasy.getDeployment().getRegistry().addPerRequestResource(DummyResource.class);
+    resteasy.getDeployment().getProviderFactory().register(filter);
+
+    Response response =
+        resteasy
+            .getClient()
+            .target(resteasy.getBaseUriBuilder().path(DummyResource.class))
+            .request()
+            .header(Util.HEADER, Util.PREFIX + "bad516")
+            .post(Entity.entity(PAYLOAD, MediaType.APPLICATION_OCTET_STREAM_TYPE));
+
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    byte[] payload = response.readEntity(byte[].class);
+    assertThat(payload).isNullOrEmpty();
+    assertThat(spoolDirectory.list()).isEmpty();
+  }
+
+  @Test
+  public void testValidUpperCaseSignature() {
+    resteasy.getDeployment().getRegistry().addPerRequestResource(DummyResource.class);
+    resteasy.getDeployment().getProviderFactory().register(new WebhookSignatureFilter(SECRET));
+
+    Response response =
+        resteasy
+            .getClient()
+            .target(resteasy.getBaseUriBuilder().path(DummyResource.class))
+            .request()
+            .header(Util.HEADER, Util.PREFIX + SIGNATURE.toUpperCase(Locale.ROOT))
+            .post(Entity.entity(PAYLOAD, MediaType.APPLICATION_OCTET_STREAM_TYPE));
+
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    byte[] payload = response.readEntity(byte[].class);
+    assertThat(payload).isEqualTo(PAYLOAD);
+  }
+
+  @Test
+  public void testValidSha256Signature() {
+    resteasy.getDeployment().getRegistry().addPerRequestResource(DummyResource.class);
+    resteasy.getDeployment().getProviderFactory().register(new WebhookSignatureFilter(SECRET));
+
+    Response response =
+        resteasy
+            .getClient()
+            .target(resteasy.getBaseUriBuilder().path(DummyResource.class))
+            .request()
+            .header(
+                SignatureAlgorithm.SHA256.getHeader(),
+                SignatureAlgorithm.SHA256.getPrefix() + SHA256_SIGNATURE)
+            .post(Entity.entity(PAYLOAD, MediaType.APPLICATION_OCTET_STREAM_TYPE));
+
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    byte[] payload = response.readEntity(byte[].class);
+    assertThat(payload).isEqualTo(PAYLOAD);
+  }
+
+  @Test
+  public void testStrongestSignatureWins() {
+    resteasy.getDeployment().getRegistry().addPerRequestResource(DummyResource.class);
+    resteasy.getDeployment().getProviderFactory().register(new WebhookSignatureFilter(SECRET));
+
+    Response response =
+        resteasy
+            .getClient()
+            .target(resteasy.getBaseUriBuilder().path(DummyResource.class))
+            .request()
+            .header(Util.HEADER, Util.PREFIX + "bad516")
+            .header(
+                SignatureAlgorithm.SHA256.getHeader(),
+                SignatureAlgorithm.SHA256.getPrefix() + SHA256_SIGNATURE)
+            .post(Entity.entity(PAYLOAD, MediaType.APPLICATION_OCTET_STREAM_TYPE));
+
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    byte[] payload = response.readEntity(byte[].class);
+    assertThat(payload).isEqualTo(PAYLOAD);
+  }
+
+  @Test
+  public void testRestrictedAlgorithms() {
+    WebhookSignatureFilter filter = new WebhookSignatureFilter(SECRET);
+    filter.setAlgorithms(SignatureAlgorithm.SHA256, SignatureAlgorithm.SHA512);
+    resteasy.getDeployment().getRegistry().addPerRequestResource(DummyResource.class);
+    resteasy.getDeployment().getProviderFactory().register(filter);
+
+    Response response =
+        resteasy
+            .getClient()
+            .target(resteasy.getBaseUriBuilder().path(DummyResource.class))
+            .request()
+            .header(Util.HEADER, Util.PREFIX + SIGNATURE)
+            .post(Entity.entity(PAYLOAD, MediaType.APPLICATION_OCTET_STREAM_TYPE));
+
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.BAD_REQUEST);
+  }
+
   @Test
   public void testMissingHeader() {
     resteasy.getDeployment().getRegistry().addPerRequestResource(DummyResource.class);
@@ -172,6 +329,24 @@ public class WebhookSignatureFilterTest {
     assertThat(payload).isNullOrEmpty();
   }
 
+  @Test
+  public void testMalformedSignature() {
+    resteasy.getDeployment().getRegistry().addPerRequestResource(DummyResource.class);
+    resteasy.getDeployment().getProviderFactory().register(new WebhookSignatureFilter(SECRET));
+
+    Response response =
+        resteasy
+            .getClient()
+            .target(resteasy.getBaseUriBuilder().path(DummyResource.class))
+            .request()
+            .header(Util.HEADER, Util.PREFIX + SIGNATURE.replace('a', 'z'))
+            .post(Entity.entity(PAYLOAD, MediaType.APPLICATION_OCTET_STREAM_TYPE));
+
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    byte[] payload = response.readEntity(byte[].class);
+    assertThat(payload).isNullOrEmpty();
+  }
+
   @Path("/")
   @Webhook
   public static class DummyResource {
@@ -183,6 +358,26 @@ public class WebhookSignatureFilterTest {
     }
   }
 
+  @Path("/")
+  @Webhook
+  public static class StreamingResource {
+    @POST
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public StreamingOutput echo(final InputStream payload) {
+      // The request entity is only read once the response filters have run.
+      return new StreamingOutput() {
+        @Override
+        public void write(OutputStream output) throws IOException {
+          byte[] buffer = new byte[PAYLOAD.length / 4];
+          for (int n; (n = payload.read(buffer)) != -1; ) {
+            output.write(buffer, 0, n);
+          }
+        }
+      };
+    }
+  }
+
   @Path("/")
   @Webhook
   public static class DummyResourceWithWebhookSecret extends DummyResource
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.client.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.jboss.resteasy.client.jaxrs.ResteasyClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the client engines against a {@link MockWebServer} on the loopback interface.
+ *
+ * <p>Each benchmark is measured both in throughput and in sample time (to get latency percentiles).
+ * Use JMH's {@code -t} option (or {@link ConcurrencyRunner}) to vary the number of threads, and
+ * {@code -prof gc} to report allocation rates; note that allocations include those of the server,
+ * which runs in the same JVM, and are identical whatever the engine.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ClientEngineBenchmark {
+  private static final int MAX_CONNECTIONS = 256;
+  private static final int HEADER_COUNT = 50;
+  private static final String JSON = "{\"id\":42,\"name\":\"jaxrs-utils\",\"tags\":[\"a\",\"b\"]}";
+
+  @Param({"OKHTTP3", "OKHTTP", "APACHE"})
+  Engine engine;
+
+  @Param({"1048576"})
+  int largeSize;
+
+  private MockWebServer server;
+  private ResteasyClient client;
+  private WebTarget target;
+  private byte[] largePayload;
+  private MultivaluedMap<String, Object> requestHeaders;
+
+  @Setup
+  public void setUp() throws IOException {
+    largePayload = new byte[largeSize];
+    new Random(42).nextBytes(largePayload);
+    requestHeaders = new MultivaluedHashMap<>();
+    for (int i = 0; i < HEADER_COUNT; i++) {
+      requestHeaders.add("X-Header-" + i, "value-" + i);
+    }
+
+    final MockResponse json =
+        new MockResponse().setHeader("Content-Type", MediaType.APPLICATION_JSON).setBody(JSON);
+    final MockResponse large =
+        new MockResponse()
+            .setHeader("Content-Type", MediaType.APPLICATION_OCTET_STREAM)
+            .setBody(new Buffer().write(largePayload));
+    final MockResponse noContent = new MockResponse().setResponseCode(204);
+    final MockResponse headers = new MockResponse().setBody("OK");
+    for (int i = 0; i < HEADER_COUNT; i++) {
+      headers.addHeader("X-Header-" + i, "value-" + i);
+    }
+
+    server = new MockWebServer();
+    // Do not retain uploaded bodies
+    server.setBodyLimit(0);
+    server.setDispatcher(
+        new Dispatcher() {
+          @Override
+          public MockResponse dispatch(RecordedRequest request) {
+            switch (request.getPath()) {
+              case "/json":
+                return json;
+              case "/large":
+                return large;
+              case "/upload":
+                return noContent;
+              case "/headers":
+                return headers;
+              default:
+                return new MockResponse().setResponseCode(404);
+            }
+          }
+        });
+    server.start();
+
+    client = engine.createClient(MAX_CONNECTIONS);
+    target = client.target(server.url("/").uri());
+  }
+
+  @TearDown(Level.Iteration)
+  public void drainRecordedRequests() throws InterruptedException {
+    // MockWebServer records every request, don't let them pile up.
+    while (server.takeRequest(0, TimeUnit.SECONDS) != null) {
+      // continue
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    client.close();
+    server.shutdown();
+  }
+
+  @Benchmark
+  public String smallJsonGet() {
+    return target.path("json").request(MediaType.APPLICATION_JSON_TYPE).get(String.class);
+  }
+
+  @Benchmark
+  public long largeDownload() throws IOException {
+    try (InputStream in = target.path("large").request().get(InputStream.class)) {
+      return drain(in);
+    }
+  }
+
+  @Benchmark
+  public int largeUpload() {
+    Response response =
+        target
+            .path("upload")
+            .request()
+            .post(Entity.entity(largePayload, MediaType.APPLICATION_OCTET_STREAM_TYPE));
+    response.close();
+    return response.getStatus();
+  }
+
+  @Benchmark
+  public MultivaluedMap<String, String> headerHeavyGet() {
+    Response response = target.path("headers").request().headers(requestHeaders).get();
+    try {
+      return response.getStringHeaders();
+    } finally {
+      response.close();
+    }
+  }
+
+  private static long drain(InputStream in) throws IOException {
+    byte[] buf = new byte[8192];
+    long total = 0;
+    for (int r; (r = in.read(buf)) != -1; ) {
+      total += r;
+    }
+    return total;
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.client.benchmarks;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with 1 to 256 threads.
+ *
+ * <p>Accepts the same arguments as JMH itself (except {@code -t}); e.g. {@code java -cp
+ * target/benchmarks.jar net.ltgt.resteasy.client.benchmarks.ConcurrencyRunner ClientEngineBenchmark
+ * -prof gc -rf json}.
+ */
+public class ConcurrencyRunner {
+  private static final int[] THREADS = {1, 4, 16, 64, 256};
+
+  public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+    CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+    for (int threads : THREADS) {
+      new Runner(new OptionsBuilder().parent(commandLineOptions).threads(threads).build()).run();
+    }
+  }
+}
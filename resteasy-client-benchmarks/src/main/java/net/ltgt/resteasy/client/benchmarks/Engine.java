@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.client.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.jboss.resteasy.client.jaxrs.ResteasyClient;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+
+/**
+ * The client engines being compared.
+ *
+ * <p>All engines are configured to keep up to {@code maxConnections} idle connections to the
+ * server, so that they're compared on an equal footing whatever the number of threads.
+ */
+public enum Engine {
+  /** {@link net.ltgt.resteasy.client.okhttp3.OkHttpClientEngine}, backed by OkHttp 3. */
+  OKHTTP3 {
+    @Override
+    ResteasyClient createClient(int maxConnections) {
+      okhttp3.OkHttpClient client =
+          new okhttp3.OkHttpClient.Builder()
+              .connectionPool(new okhttp3.ConnectionPool(maxConnections, 5, TimeUnit.MINUTES))
+              .build();
+      return new ResteasyClientBuilder()
+          .httpEngine(new net.ltgt.resteasy.client.okhttp3.OkHttpClientEngine(client))
+          .build();
+    }
+  },
+  /** {@link net.ltgt.resteasy.client.okhttp.OkHttpClientEngine}, backed by OkHttp 2. */
+  OKHTTP {
+    @Override
+    ResteasyClient createClient(int maxConnections) {
+      com.squareup.okhttp.OkHttpClient client = new com.squareup.okhttp.OkHttpClient();
+      client.setConnectionPool(
+          new com.squareup.okhttp.ConnectionPool(maxConnections, 5, TimeUnit.MINUTES));
+      return new ResteasyClientBuilder()
+          .httpEngine(new net.ltgt.resteasy.client.okhttp.OkHttpClientEngine(client))
+          .build();
+    }
+  },
+  /** Resteasy's default engine, backed by Apache HttpClient 4. */
+  APACHE {
+    @Override
+    ResteasyClient createClient(int maxConnections) {
+      return new ResteasyClientBuilder()
+          .connectionPoolSize(maxConnections)
+          .maxPooledPerRoute(maxConnections)
+          .build();
+    }
+  };
+
+  abstract ResteasyClient createClient(int maxConnections);
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.client.okhttp;
+
+import com.squareup.okhttp.Call;
+import com.squareup.okhttp.Callback;
+import com.squareup.okhttp.Request;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.InvocationCallback;
+import javax.ws.rs.core.Response;
+
+/**
+ * A {@link Future} of a JAX-RS {@link Response}, completed from an OkHttp {@link Callback}.
+ *
+ * <p>The {@link InvocationCallback}, if any, is notified on the thread completing the future,
+ * before the future is actually marked as done.
+ */
+abstract class InvocationFuture implements Future<Response>, Callback {
+  private final CountDownLatch done = new CountDownLatch(1);
+  private final InvocationCallback<Response> callback;
+
+  private Call call;
+  private boolean completing;
+  private boolean cancelled;
+  private Response response;
+  private Throwable failure;
+
+  InvocationFuture(InvocationCallback<Response> callback) {
+    this.callback = callback;
+  }
+
+  /**
+   * Turns the OkHttp response into a JAX-RS response. This is called on OkHttp's callback thread.
+   */
+  protected abstract Response processResponse(com.squareup.okhttp.Response response);
+
+  synchronized void setCall(Call call) {
+    this.call = call;
+  }
+
+  @Override
+  public void onFailure(Request request, IOException e) {
+    failed(new ProcessingException("Unable to invoke request", e));
+  }
+
+  @Override
+  public void onResponse(com.squareup.okhttp.Response response) {
+    Response processed;
+    try {
+      processed = processResponse(response);
+    } catch (RuntimeException e) {
+      try {
+        response.body().close();
+      } catch (IOException suppressedExc) {
+        e.addSuppressed(suppressedExc);
+      }
+      failed(e);
+      return;
+    }
+    completed(processed);
+  }
+
+  void completed(Response response) {
+    synchronized (this) {
+      if (completing) {
+        response.close();
+        return;
+      }
+      completing = true;
+      this.response = response;
+    }
+    try {
+      if (callback != null) {
+        callback.completed(response);
+      }
+    } finally {
+      done.countDown();
+    }
+  }
+
+  void failed(Throwable failure) {
+    synchronized (this) {
+      if (completing) {
+        return;
+      }
+      completing = true;
+      this.failure = failure;
+    }
+    try {
+      if (callback != null) {
+        callback.failed(failure);
+      }
+    } finally {
+      done.countDown();
+    }
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    Call call;
+    synchronized (this) {
+      if (completing) {
+        return false;
+      }
+      completing = true;
+      cancelled = true;
+      call = this.call;
+    }
+    done.countDown();
+    if (call != null) {
+      call.cancel();
+    }
+    return true;
+  }
+
+  @Override
+  public synchronized boolean isCancelled() {
+    return cancelled;
+  }
+
+  @Override
+  public boolean isDone() {
+    return done.getCount() == 0;
+  }
+
+  @Override
+  public Response get() throws InterruptedException, ExecutionException {
+    done.await();
+    return getResult();
+  }
+
+  @Override
+  public Response get(long timeout, TimeUnit unit)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    if (!done.await(timeout, unit)) {
+      throw new TimeoutException();
+    }
+    return getResult();
+  }
+
+  private synchronized Response getResult() throws ExecutionException {
+    if (cancelled) {
+      throw new CancellationException();
+    }
+    if (failure != null) {
+      throw new ExecutionException(failure);
+    }
+    return response;
+  }
+}
@@ -15,6 +15,7 @@
  */
 package net.ltgt.resteasy.client.okhttp;
 
+import com.squareup.okhttp.Call;
 import com.squareup.okhttp.Headers;
 import com.squareup.okhttp.MediaType;
 import com.squareup.okhttp.OkHttpClient;
@@ -25,15 +26,26 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
 import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.InvocationCallback;
+import javax.ws.rs.client.ResponseProcessingException;
 import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Providers;
 import okio.Buffer;
 import okio.BufferedSink;
 import org.jboss.resteasy.client.jaxrs.ClientHttpEngine;
+import org.jboss.resteasy.client.jaxrs.internal.AbortedResponse;
 import org.jboss.resteasy.client.jaxrs.internal.ClientInvocation;
+import org.jboss.resteasy.client.jaxrs.internal.ClientRequestContextImpl;
 import org.jboss.resteasy.client.jaxrs.internal.ClientResponse;
+import org.jboss.resteasy.client.jaxrs.internal.ClientResponseContextImpl;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
 import org.jboss.resteasy.util.CaseInsensitiveMap;
 
 /**
@@ -47,6 +59,14 @@ import org.jboss.resteasy.util.CaseInsensitiveMap;
  *     .build()
  * </code></pre>
  *
+ * <p>Resteasy runs {@link javax.ws.rs.client.AsyncInvoker asynchronous invocations} by blocking a
+ * thread from its executor for the duration of the call. To rather use OkHttp's asynchronous calls,
+ * use {@link #submit(Invocation, InvocationCallback)} instead:
+ *
+ * <pre><code>
+ * engine.submit(client.target(uri).request().buildGet(), callback);
+ * </code></pre>
+ *
  * @author Thomas Broyer <t.broyer@ltgt.net>
  */
 public class OkHttpClientEngine implements ClientHttpEngine {
@@ -85,6 +105,121 @@ public class OkHttpClientEngine implements ClientHttpEngine {
     return createResponse(request, response);
   }
 
+  /**
+   * Asynchronously invokes the request, using OkHttp's {@link com.squareup.okhttp.Dispatcher}
+   * rather than blocking a thread.
+   *
+   * @see #submit(Invocation, InvocationCallback)
+   */
+  public Future<javax.ws.rs.core.Response> submit(Invocation invocation) {
+    return submit(invocation, null);
+  }
+
+  /**
+   * Asynchronously invokes the request, using OkHttp's {@link com.squareup.okhttp.Dispatcher}
+   * rather than blocking a thread.
+   *
+   * <p>The invocation must have been built by a JAX-RS client using this engine. Request filters
+   * and writer interceptors are run on the calling thread; response filters are run, and the
+   * callback notified, on OkHttp's callback thread.
+   *
+   * @param callback an optional callback notified of the outcome of the invocation; may be {@code
+   *     null}
+   */
+  public Future<javax.ws.rs.core.Response> submit(
+      Invocation invocation, InvocationCallback<javax.ws.rs.core.Response> callback) {
+    final ClientInvocation request = (ClientInvocation) invocation;
+    final ClientRequestContextImpl requestContext = new ClientRequestContextImpl(request);
+    InvocationFuture future =
+        new InvocationFuture(callback) {
+          @Override
+          protected javax.ws.rs.core.Response processResponse(Response response) {
+            Providers current = pushProviders(request);
+            try {
+              return filterResponse(request, requestContext, createResponse(request, response));
+            } finally {
+              popProviders(current);
+            }
+          }
+        };
+    Providers current = pushProviders(request);
+    try {
+      ClientResponse aborted = filterRequest(request, requestContext);
+      if (aborted != null) {
+        future.completed(filterResponse(request, requestContext, aborted));
+        return future;
+      }
+      Call call = client.newCall(createRequest(request));
+      future.setCall(call);
+      call.enqueue(future);
+    } catch (RuntimeException e) {
+      future.failed(e);
+    } finally {
+      popProviders(current);
+    }
+    return future;
+  }
+
+  private static Providers pushProviders(ClientInvocation request) {
+    Providers current = ResteasyProviderFactory.getContextData(Providers.class);
+    ResteasyProviderFactory.pushContext(Providers.class, request.getClientConfiguration());
+    return current;
+  }
+
+  private static void popProviders(Providers current) {
+    ResteasyProviderFactory.popContextData(Providers.class);
+    if (current != null) {
+      ResteasyProviderFactory.pushContext(Providers.class, current);
+    }
+  }
+
+  /**
+   * Runs the request filters, the same way as {@link ClientInvocation#invoke()}: failures other
+   * than {@link ProcessingException}s are wrapped into a {@link ProcessingException}.
+   */
+  private static ClientResponse filterRequest(
+      ClientInvocation request, ClientRequestContextImpl requestContext) {
+    ClientRequestFilter[] requestFilters = request.getRequestFilters();
+    if (requestFilters == null) {
+      return null;
+    }
+    for (ClientRequestFilter filter : requestFilters) {
+      try {
+        filter.filter(requestContext);
+      } catch (ProcessingException e) {
+        throw e;
+      } catch (IOException | RuntimeException e) {
+        throw new ProcessingException(e);
+      }
+      if (requestContext.getAbortedWithResponse() != null) {
+        return new AbortedResponse(
+            request.getClientConfiguration(), requestContext.getAbortedWithResponse());
+      }
+    }
+    return null;
+  }
+
+  /** Runs the response filters, the same way as {@link ClientInvocation#invoke()}. */
+  private static ClientResponse filterResponse(
+      ClientInvocation request, ClientRequestContextImpl requestContext, ClientResponse response) {
+    response.setProperties(request.getClientConfiguration().getMutableProperties());
+    ClientResponseFilter[] responseFilters = request.getResponseFilters();
+    if (responseFilters == null) {
+      return response;
+    }
+    ClientResponseContextImpl responseContext = new ClientResponseContextImpl(response);
+    for (ClientResponseFilter filter : responseFilters) {
+      try {
+        filter.filter(requestContext, responseContext);
+      } catch (ResponseProcessingException e) {
+        throw e;
+      } catch (IOException | RuntimeException e) {
+        throw new ResponseProcessingException(response, e);
+      }
+    }
+    return response;
+  }
+
   private Request createRequest(ClientInvocation request) {
     Request.Builder builder =
         new Request.Builder()
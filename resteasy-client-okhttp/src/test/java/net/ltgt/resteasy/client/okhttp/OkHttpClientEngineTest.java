@@ -26,9 +26,16 @@ import com.squareup.okhttp.mockwebserver.MockWebServer;
 import com.squareup.okhttp.mockwebserver.RecordedRequest;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.ws.rs.ProcessingException;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.InvocationCallback;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -84,6 +91,7 @@ public class OkHttpClientEngineTest {
 
   private static final Object TAG = new Object();
   private OkHttpClient okHttpClient;
+  private OkHttpClientEngine engine;
   private Client client;
 
   @Before
@@ -127,7 +135,8 @@ public class OkHttpClientEngineTest {
     httpLoggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BODY);
     okHttpClient.networkInterceptors().add(httpLoggingInterceptor);
 
-    client = new ResteasyClientBuilder().httpEngine(new OkHttpClientEngine(okHttpClient)).build();
+    engine = new OkHttpClientEngine(okHttpClient);
+    client = new ResteasyClientBuilder().httpEngine(engine).build();
   }
 
   @After
@@ -179,4 +188,76 @@ public class OkHttpClientEngineTest {
     assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
     assertThat(response.readEntity(String.class)).isEqualTo(HEADER_VALUE);
   }
+
+  @Test
+  public void asyncRequest() throws Exception {
+    Future<Response> future =
+        engine.submit(
+            client
+                .target(mockServer.url("/requestHeader").uri())
+                .register(
+                    new ClientRequestFilter() {
+                      @Override
+                      public void filter(ClientRequestContext requestContext) throws IOException {
+                        requestContext.getHeaders().putSingle(HEADER_NAME, HEADER_VALUE);
+                      }
+                    })
+                .request()
+                .buildGet());
+
+    Response response = future.get();
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    assertThat(response.readEntity(String.class)).isEqualTo(HEADER_VALUE);
+  }
+
+  @Test
+  public void asyncRequestFilterFailure() throws Exception {
+    Future<Response> future =
+        engine.submit(
+            client
+                .target(mockServer.url("/simple").uri())
+                .register(
+                    new ClientRequestFilter() {
+                      @Override
+                      public void filter(ClientRequestContext requestContext) throws IOException {
+                        throw new WebApplicationException("Failed filtering request");
+                      }
+                    })
+                .request()
+                .buildGet());
+
+    try {
+      future.get();
+      fail("Expected ExecutionException");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause())
+          .isExactlyInstanceOf(ProcessingException.class)
+          .hasCauseExactlyInstanceOf(WebApplicationException.class);
+    }
+    assertThat(mockServer.getRequestCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void asyncRequestWithCallback() throws Exception {
+    final AtomicReference<Response> completed = new AtomicReference<>();
+    Future<Response> future =
+        engine.submit(
+            client.target(mockServer.url("/simple").uri()).request().buildGet(),
+            new InvocationCallback<Response>() {
+              @Override
+              public void completed(Response response) {
+                completed.set(response);
+              }
+
+              @Override
+              public void failed(Throwable throwable) {
+                throw new AssertionError(throwable);
+              }
+            });
+
+    Response response = future.get();
+    assertThat(completed.get()).isSameAs(response);
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.NOT_FOUND);
+    assertThat(response.readEntity(String.class)).isEqualTo("Not found");
+  }
 }
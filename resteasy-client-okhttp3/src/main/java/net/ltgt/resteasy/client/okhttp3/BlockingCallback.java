@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.client.okhttp3;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+
+/** A {@link Callback} whose outcome can be waited for. */
+class BlockingCallback implements Callback {
+  private final CountDownLatch done = new CountDownLatch(1);
+
+  private Response response;
+  private IOException failure;
+
+  @Override
+  public void onFailure(Call call, IOException e) {
+    failure = e;
+    done.countDown();
+  }
+
+  @Override
+  public void onResponse(Call call, Response response) throws IOException {
+    this.response = response;
+    done.countDown();
+  }
+
+  boolean isDone() {
+    return done.getCount() == 0;
+  }
+
+  /** Waits for the call to complete, then returns its response or throws its failure. */
+  Response await() throws IOException {
+    try {
+      done.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      InterruptedIOException ioe = new InterruptedIOException();
+      ioe.initCause(e);
+      throw ioe;
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return response;
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.client.okhttp3;
+
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.Response;
+
+/**
+ * Statistics of the responses received by an {@link OkHttpClientEngine} whose client has an
+ * {@linkplain okhttp3.Cache HTTP cache}.
+ *
+ * @see OkHttpClientEngine#getCacheStats()
+ */
+public final class CacheStats {
+  private final long hitCount;
+  private final long revalidatedHitCount;
+  private final long missCount;
+
+  private CacheStats(long hitCount, long revalidatedHitCount, long missCount) {
+    this.hitCount = hitCount;
+    this.revalidatedHitCount = revalidatedHitCount;
+    this.missCount = missCount;
+  }
+
+  /** Returns the number of responses served from the cache without contacting the server. */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Returns the number of responses served from the cache after a conditional request to the server
+   * answered with {@code 304 Not Modified}.
+   */
+  public long getRevalidatedHitCount() {
+    return revalidatedHitCount;
+  }
+
+  /**
+   * Returns the number of responses served by the server, either because they weren't in the cache,
+   * or because they had changed.
+   */
+  public long getMissCount() {
+    return missCount;
+  }
+
+  /** Returns the number of responses received, whether served from the cache or the server. */
+  public long getRequestCount() {
+    return hitCount + revalidatedHitCount + missCount;
+  }
+
+  @Override
+  public String toString() {
+    return "CacheStats{hits="
+        + hitCount
+        + ", revalidatedHits="
+        + revalidatedHitCount
+        + ", misses="
+        + missCount
+        + "}";
+  }
+
+  /** Counts the responses as they're received. */
+  static class Counter {
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong revalidatedHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    void record(Response response) {
+      Response cacheResponse = response.cacheResponse();
+      Response networkResponse = response.networkResponse();
+      if (networkResponse == null) {
+        if (cacheResponse != null) {
+          hitCount.incrementAndGet();
+        }
+        // else: only-if-cached request that couldn't be satisfied
+      } else if (cacheResponse != null && networkResponse.code() == 304) {
+        revalidatedHitCount.incrementAndGet();
+      } else {
+        missCount.incrementAndGet();
+      }
+    }
+
+    CacheStats snapshot() {
+      return new CacheStats(hitCount.get(), revalidatedHitCount.get(), missCount.get());
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.client.okhttp3;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+
+/**
+ * Executes calls synchronously on dedicated threads, notifying a {@link Callback} of their outcome.
+ *
+ * <p>Contrary to {@link Call#enqueue(Callback)}, calls aren't subject to the {@linkplain
+ * okhttp3.Dispatcher#setMaxRequestsPerHost(int) dispatcher's limits}, so they're never queued
+ * behind other calls; this is used for calls that stand for synchronous invocations.
+ */
+final class CallExecutor {
+  private static final ExecutorService EXECUTOR =
+      Executors.newCachedThreadPool(
+          new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+              Thread thread = new Thread(r, "OkHttpClientEngine call");
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+
+  /** Executes the call on another thread. */
+  static void enqueue(final Call call, final Callback callback) {
+    EXECUTOR.execute(
+        new Runnable() {
+          @Override
+          public void run() {
+            execute(call, callback);
+          }
+        });
+  }
+
+  /** Executes the call on the current thread. */
+  static void execute(Call call, Callback callback) {
+    Response response;
+    try {
+      response = call.execute();
+    } catch (IOException e) {
+      callback.onFailure(call, e);
+      return;
+    } catch (RuntimeException e) {
+      // Don't leave the callback waiting forever, e.g. when an interceptor throws.
+      callback.onFailure(call, new IOException(e));
+      return;
+    }
+    try {
+      callback.onResponse(call, response);
+    } catch (IOException e) {
+      response.close();
+    }
+  }
+
+  private CallExecutor() {}
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.client.okhttp3;
+
+import java.io.IOException;
+import java.net.URI;
+import okhttp3.Protocol;
+import org.jboss.resteasy.client.jaxrs.internal.ClientInvocation;
+
+/**
+ * Metrics of a single call made by an {@link OkHttpClientEngine}.
+ *
+ * <p>All durations are in nanoseconds, and are {@code -1} if the call failed before reaching the
+ * corresponding step.
+ *
+ * @see CallMetricsListener
+ */
+public final class CallMetrics {
+  private final ClientInvocation invocation;
+  private final long connectNanos;
+  private final long responseHeadersNanos;
+  private final long responseBodyNanos;
+  private final long totalNanos;
+  private final int networkRequestCount;
+  private final boolean connectionReused;
+  private final Protocol protocol;
+  private final int status;
+  private final IOException failure;
+
+  CallMetrics(
+      ClientInvocation invocation,
+      long connectNanos,
+      long responseHeadersNanos,
+      long responseBodyNanos,
+      long totalNanos,
+      int networkRequestCount,
+      boolean connectionReused,
+      Protocol protocol,
+      int status,
+      IOException failure) {
+    this.invocation = invocation;
+    this.connectNanos = connectNanos;
+    this.responseHeadersNanos = responseHeadersNanos;
+    this.responseBodyNanos = responseBodyNanos;
+    this.totalNanos = totalNanos;
+    this.networkRequestCount = networkRequestCount;
+    this.connectionReused = connectionReused;
+    this.protocol = protocol;
+    this.status = status;
+    this.failure = failure;
+  }
+
+  /**
+   * Returns the invocation that led to the call.
+   *
+   * <p>Its properties can be used to tag the metrics, e.g. with a URI template set by a {@link
+   * javax.ws.rs.client.ClientRequestFilter} or by the code building the invocation.
+   */
+  public ClientInvocation getInvocation() {
+    return invocation;
+  }
+
+  public String getMethod() {
+    return invocation.getMethod();
+  }
+
+  public URI getUri() {
+    return invocation.getUri();
+  }
+
+  /**
+   * Returns the time it took to get a connection for the first network request: DNS lookup, TCP
+   * connect and TLS handshake for a new connection, or picking it from the pool.
+   */
+  public long getConnectNanos() {
+    return connectNanos;
+  }
+
+  /**
+   * Returns the time between starting to send the last network request and receiving the response
+   * headers. This includes the time spent uploading the request body.
+   */
+  public long getResponseHeadersNanos() {
+    return responseHeadersNanos;
+  }
+
+  /**
+   * Returns the time between receiving the response headers and the response body being entirely
+   * read or closed.
+   */
+  public long getResponseBodyNanos() {
+    return responseBodyNanos;
+  }
+
+  /** Returns the time between the start and the end of the call. */
+  public long getTotalNanos() {
+    return totalNanos;
+  }
+
+  /** Returns the number of network requests made for the call, including retries and redirects. */
+  public int getNetworkRequestCount() {
+    return networkRequestCount;
+  }
+
+  /** Returns whether the connection used by the last network request had already been used. */
+  public boolean isConnectionReused() {
+    return connectionReused;
+  }
+
+  /** Returns the protocol of the response, or {@code null} if the call failed. */
+  public Protocol getProtocol() {
+    return protocol;
+  }
+
+  /** Returns the status code of the response, or {@code -1} if the call failed. */
+  public int getStatus() {
+    return status;
+  }
+
+  /** Returns the cause of the failure of the call, or {@code null} if it succeeded. */
+  public IOException getFailure() {
+    return failure;
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.client.okhttp3;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.jboss.resteasy.client.jaxrs.internal.ClientInvocation;
+
+/**
+ * Collects {@link CallMetrics} using an application interceptor and a network interceptor.
+ *
+ * <p>The engine tags its requests with their {@link ClientInvocation}; the application interceptor
+ * replaces that tag with a {@link Recorder} that the network interceptor then updates.
+ */
+class CallMetricsInterceptor implements Interceptor {
+
+  /** Returns a set of connections to share between all the clients instrumented for an engine. */
+  static Set<Connection> newConnectionSet() {
+    return Collections.synchronizedSet(
+        Collections.newSetFromMap(new WeakHashMap<Connection, Boolean>()));
+  }
+
+  /**
+   * Returns a client sharing the connection pool and dispatcher of the given one.
+   *
+   * @param seenConnections the connections already used, to detect connection reuse; must outlive
+   *     the returned client so that reuse is still detected after the engine rebuilds it.
+   */
+  static OkHttpClient instrument(
+      OkHttpClient client, CallMetricsListener listener, Set<Connection> seenConnections) {
+    return client
+        .newBuilder()
+        .addInterceptor(new CallMetricsInterceptor(listener))
+        .addNetworkInterceptor(new NetworkInterceptor(seenConnections))
+        .build();
+  }
+
+  private final CallMetricsListener listener;
+
+  private CallMetricsInterceptor(CallMetricsListener listener) {
+    this.listener = listener;
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    Request request = chain.request();
+    if (!(request.tag() instanceof ClientInvocation)) {
+      return chain.proceed(request);
+    }
+    Recorder recorder = new Recorder((ClientInvocation) request.tag(), listener);
+    Response response;
+    try {
+      response = chain.proceed(request.newBuilder().tag(recorder).build());
+    } catch (IOException e) {
+      recorder.end(e);
+      throw e;
+    }
+    recorder.responseHeaders(response);
+    return response.newBuilder().body(new RecordingResponseBody(response.body(), recorder)).build();
+  }
+
+  private static class NetworkInterceptor implements Interceptor {
+    private final Set<Connection> seenConnections;
+
+    NetworkInterceptor(Set<Connection> seenConnections) {
+      this.seenConnections = seenConnections;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+      Request request = chain.request();
+      if (!(request.tag() instanceof Recorder)) {
+        return chain.proceed(request);
+      }
+      Recorder recorder = (Recorder) request.tag();
+      recorder.networkRequest(!seenConnections.add(chain.connection()));
+      Response response = chain.proceed(request);
+      recorder.networkResponse();
+      return response;
+    }
+  }
+
+  /** Records the timings of a call. A call is only ever processed by one thread at a time. */
+  private static class Recorder {
+    private final ClientInvocation invocation;
+    private final CallMetricsListener listener;
+    private final long start = System.nanoTime();
+
+    private long connected = -1;
+    private long networkRequest = -1;
+    private long networkResponse = -1;
+    private int networkRequestCount;
+    private boolean connectionReused;
+    private Protocol protocol;
+    private int status = -1;
+    private boolean ended;
+
+    Recorder(ClientInvocation invocation, CallMetricsListener listener) {
+      this.invocation = invocation;
+      this.listener = listener;
+    }
+
+    void networkRequest(boolean connectionReused) {
+      networkRequest = System.nanoTime();
+      if (connected < 0) {
+        connected = networkRequest;
+      }
+      networkRequestCount++;
+      this.connectionReused = connectionReused;
+    }
+
+    void networkResponse() {
+      networkResponse = System.nanoTime();
+    }
+
+    void responseHeaders(Response response) {
+      protocol = response.protocol();
+      status = response.code();
+    }
+
+    /** Ends the recording, failed if {@code failure} is not null; only the first call counts. */
+    void end(IOException failure) {
+      if (ended) {
+        return;
+      }
+      ended = true;
+      long end = System.nanoTime();
+      listener.callEnded(
+          new CallMetrics(
+              invocation,
+              connected < 0 ? -1 : connected - start,
+              networkResponse < 0 ? -1 : networkResponse - networkRequest,
+              (networkResponse < 0 || failure != null) ? -1 : end - networkResponse,
+              end - start,
+              networkRequestCount,
+              connectionReused,
+              protocol,
+              failure == null ? status : -1,
+              failure));
+    }
+  }
+
+  /** Ends the recording when the body has been entirely read, has failed to be read, or closed. */
+  private static class RecordingResponseBody extends ResponseBody {
+    private final ResponseBody delegate;
+    private final BufferedSource source;
+
+    RecordingResponseBody(ResponseBody delegate, final Recorder recorder) {
+      this.delegate = delegate;
+      this.source =
+          Okio.buffer(
+              new ForwardingSource(delegate.source()) {
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                  long read;
+                  try {
+                    read = super.read(sink, byteCount);
+                  } catch (IOException e) {
+                    recorder.end(e);
+                    throw e;
+                  }
+                  if (read == -1) {
+                    recorder.end(null);
+                  }
+                  return read;
+                }
+
+                @Override
+                public void close() throws IOException {
+                  recorder.end(null);
+                  super.close();
+                }
+              });
+    }
+
+    @Override
+    public MediaType contentType() {
+      return delegate.contentType();
+    }
+
+    @Override
+    public long contentLength() {
+      return delegate.contentLength();
+    }
+
+    @Override
+    public BufferedSource source() {
+      return source;
+    }
+  }
+}
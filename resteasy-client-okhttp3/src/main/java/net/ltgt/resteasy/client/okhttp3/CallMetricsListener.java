@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.client.okhttp3;
+
+/**
+ * Receives the {@link CallMetrics} of each call made by an {@link OkHttpClientEngine}.
+ *
+ * <p>This is where metrics would be fed to a metrics library, e.g. recording the durations into
+ * latency histograms tagged by the HTTP method and URI (template), and counting reused connections.
+ *
+ * @see OkHttpClientEngine#setCallMetricsListener(CallMetricsListener)
+ */
+public interface CallMetricsListener {
+  /**
+   * Called once per call, when the response body has been entirely read or closed, or when the call
+   * failed.
+   *
+   * <p>This is called on the thread that read or closed the response body, or that made the call,
+   * so implementations must be thread-safe and should return quickly.
+   */
+  void callEnded(CallMetrics metrics);
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.client.okhttp3;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.AsyncTimeout;
+import org.jboss.resteasy.client.jaxrs.internal.ClientInvocation;
+
+/**
+ * Retries, hedging and deadline applied by an {@link OkHttpClientEngine} to synchronous
+ * invocations.
+ *
+ * <p>Usage:
+ *
+ * <pre><code>
+ * engine.setCallPolicy(
+ *     new CallPolicy()
+ *         .setMaxRetries(2)
+ *         .setBackoff(50, 1000, TimeUnit.MILLISECONDS)
+ *         .setHedgingPercentile(0.95)
+ *         .setDeadline(2, TimeUnit.SECONDS));
+ * </code></pre>
+ *
+ * <p>Only requests with an idempotent method ({@code GET}, {@code HEAD}, {@code OPTIONS}, {@code
+ * PUT}, {@code DELETE} and {@code TRACE}) are retried or hedged, and only on I/O errors (not on
+ * error statuses); the deadline applies to all requests. Requests whose body is actually
+ * {@linkplain OkHttpClientEngine#setStreamingThreshold(long) streamed} (i.e. larger than the
+ * streaming threshold), and invocations {@linkplain
+ * OkHttpClientEngine#submit(javax.ws.rs.client.Invocation) submitted} asynchronously, are sent as
+ * is.
+ *
+ * <p>A policy can be shared by several engines, but must not be modified once in use.
+ */
+public class CallPolicy {
+  /**
+   * The name of the invocation property overriding the {@linkplain #setDeadline(long, TimeUnit)
+   * deadline} for a given invocation; its value is a {@link Number} of milliseconds.
+   *
+   * <pre><code>
+   * target.request().property(CallPolicy.DEADLINE_PROPERTY, 500).get();
+   * </code></pre>
+   */
+  public static final String DEADLINE_PROPERTY = CallPolicy.class.getName() + ".deadline";
+
+  private static final Set<String> IDEMPOTENT_METHODS =
+      new HashSet<>(Arrays.asList("GET", "HEAD", "OPTIONS", "PUT", "DELETE", "TRACE"));
+  private static final int LATENCY_SAMPLES = 128;
+  static final int MIN_LATENCY_SAMPLES = 16;
+
+  private int maxRetries;
+  private long initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(50);
+  private long maxBackoffNanos = TimeUnit.SECONDS.toNanos(1);
+  private double hedgingPercentile;
+  private long deadlineNanos;
+
+  private final long[] latencies = new long[LATENCY_SAMPLES];
+  private int latencyCount;
+  private int latencyIndex;
+
+  public int getMaxRetries() {
+    return maxRetries;
+  }
+
+  /** Sets the maximum number of times a failed request is retried. Defaults to {@code 0}. */
+  public CallPolicy setMaxRetries(int maxRetries) {
+    this.maxRetries = maxRetries;
+    return this;
+  }
+
+  /**
+   * Sets the delay before retrying a failed request.
+   *
+   * <p>The delay is doubled at each retry, starting from {@code initialBackoff} and up to {@code
+   * maxBackoff}; a random jitter of up to half the delay is then subtracted from it, so that
+   * clients don't retry in lockstep. Defaults to 50 milliseconds, up to 1 second.
+   */
+  public CallPolicy setBackoff(long initialBackoff, long maxBackoff, TimeUnit unit) {
+    this.initialBackoffNanos = unit.toNanos(initialBackoff);
+    this.maxBackoffNanos = unit.toNanos(maxBackoff);
+    return this;
+  }
+
+  public double getHedgingPercentile() {
+    return hedgingPercentile;
+  }
+
+  /**
+   * Sets the percentile of the latencies of previous requests after which a second, identical,
+   * request is sent if no response has been received yet; the first response wins and the other
+   * request is cancelled.
+   *
+   * <p>Latencies are measured up to the response headers, over the last successful requests.
+   * Requests are only hedged once enough latencies have been measured. Defaults to {@code 0},
+   * meaning requests are never hedged.
+   *
+   * <p>The first request is executed on the calling thread, as when it's not hedged, and the second
+   * one on a dedicated thread; neither is subject to the {@linkplain
+   * okhttp3.Dispatcher#setMaxRequestsPerHost(int) dispatcher's limits}.
+   *
+   * @param hedgingPercentile the percentile, between {@code 0} (exclusive) and {@code 1}; e.g.
+   *     {@code 0.95} for the 95th percentile
+   */
+  public CallPolicy setHedgingPercentile(double hedgingPercentile) {
+    if (hedgingPercentile < 0 || hedgingPercentile > 1) {
+      throw new IllegalArgumentException("hedgingPercentile must be between 0 and 1");
+    }
+    this.hedgingPercentile = hedgingPercentile;
+    return this;
+  }
+
+  public long getDeadline(TimeUnit unit) {
+    return unit.convert(deadlineNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Sets the maximum time to get a response, including retries and backoff delays. When the
+   * deadline is reached, pending requests are cancelled and the invocation fails with an {@link
+   * InterruptedIOException}.
+   *
+   * <p>This can be overridden for each invocation with the {@link #DEADLINE_PROPERTY} property.
+   * Defaults to {@code 0}, meaning no deadline.
+   */
+  public CallPolicy setDeadline(long deadline, TimeUnit unit) {
+    this.deadlineNanos = unit.toNanos(deadline);
+    return this;
+  }
+
+  Response execute(Call.Factory callFactory, ClientInvocation invocation, Request request)
+      throws IOException {
+    long timeoutNanos = timeoutNanos(invocation);
+    long deadline = (timeoutNanos > 0) ? System.nanoTime() + timeoutNanos : Long.MAX_VALUE;
+    boolean idempotent = IDEMPOTENT_METHODS.contains(request.method());
+    for (int attempt = 0; ; attempt++) {
+      long start = System.nanoTime();
+      try {
+        Response response =
+            idempotent
+                ? executeHedged(callFactory, request, deadline)
+                : executeOnce(callFactory, request, deadline);
+        recordLatency(System.nanoTime() - start);
+        return response;
+      } catch (IOException e) {
+        if (!idempotent || attempt >= maxRetries || e instanceof DeadlineExceededException) {
+          throw e;
+        }
+        long backoffNanos = backoffNanos(attempt);
+        if (remainingNanos(deadline) <= backoffNanos) {
+          throw new DeadlineExceededException(e);
+        }
+        try {
+          TimeUnit.NANOSECONDS.sleep(backoffNanos);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          InterruptedIOException ioe = new InterruptedIOException();
+          ioe.initCause(ie);
+          throw ioe;
+        }
+      }
+    }
+  }
+
+  private long timeoutNanos(ClientInvocation invocation) {
+    Object deadline = invocation.getClientConfiguration().getProperty(DEADLINE_PROPERTY);
+    if (deadline instanceof Number) {
+      return TimeUnit.MILLISECONDS.toNanos(((Number) deadline).longValue());
+    }
+    return deadlineNanos;
+  }
+
+  private static long remainingNanos(long deadline) {
+    return (deadline == Long.MAX_VALUE) ? Long.MAX_VALUE : deadline - System.nanoTime();
+  }
+
+  private long backoffNanos(int attempt) {
+    long backoff = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(attempt, 20));
+    if (backoff < 0) {
+      // overflow
+      backoff = maxBackoffNanos;
+    }
+    long jitter = backoff / 2;
+    return backoff - (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter) : 0);
+  }
+
+  private synchronized void recordLatency(long latencyNanos) {
+    latencies[latencyIndex] = latencyNanos;
+    latencyIndex = (latencyIndex + 1) % LATENCY_SAMPLES;
+    if (latencyCount < LATENCY_SAMPLES) {
+      latencyCount++;
+    }
+  }
+
+  /** Returns the delay after which to hedge requests, or {@code -1} if they must not be hedged. */
+  private long hedgingDelayNanos() {
+    if (hedgingPercentile <= 0) {
+      return -1;
+    }
+    long[] samples;
+    synchronized (this) {
+      if (latencyCount < MIN_LATENCY_SAMPLES) {
+        return -1;
+      }
+      samples = Arrays.copyOf(latencies, latencyCount);
+    }
+    Arrays.sort(samples);
+    int index = (int) Math.ceil(hedgingPercentile * samples.length) - 1;
+    return samples[Math.max(0, Math.min(index, samples.length - 1))];
+  }
+
+  private static Response executeOnce(Call.Factory callFactory, Request request, long deadline)
+      throws IOException {
+    final Call call = callFactory.newCall(request);
+    long remainingNanos = remainingNanos(deadline);
+    if (remainingNanos == Long.MAX_VALUE) {
+      return call.execute();
+    }
+    if (remainingNanos <= 0) {
+      throw new DeadlineExceededException(null);
+    }
+    AsyncTimeout timeout =
+        new AsyncTimeout() {
+          @Override
+          protected void timedOut() {
+            call.cancel();
+          }
+        };
+    timeout.timeout(remainingNanos, TimeUnit.NANOSECONDS);
+    timeout.enter();
+    Response response;
+    try {
+      response = call.execute();
+    } catch (IOException e) {
+      if (timeout.exit()) {
+        throw new DeadlineExceededException(e);
+      }
+      throw e;
+    }
+    if (timeout.exit()) {
+      // The call has been cancelled, its body cannot be read.
+      response.close();
+      throw new DeadlineExceededException(null);
+    }
+    return response;
+  }
+
+  private Response executeHedged(Call.Factory callFactory, Request request, long deadline)
+      throws IOException {
+    long hedgingDelayNanos = hedgingDelayNanos();
+    long remainingNanos = remainingNanos(deadline);
+    if (hedgingDelayNanos < 0 || hedgingDelayNanos >= remainingNanos) {
+      return executeOnce(callFactory, request, deadline);
+    }
+    final HedgedCall hedgedCall = new HedgedCall(callFactory, request);
+    AsyncTimeout hedgingTimeout =
+        new AsyncTimeout() {
+          @Override
+          protected void timedOut() {
+            hedgedCall.hedge();
+          }
+        };
+    // A zero timeout would mean no timeout.
+    hedgingTimeout.timeout(Math.max(1, hedgingDelayNanos), TimeUnit.NANOSECONDS);
+    AsyncTimeout deadlineTimeout =
+        new AsyncTimeout() {
+          @Override
+          protected void timedOut() {
+            hedgedCall.cancel();
+          }
+        };
+    if (remainingNanos != Long.MAX_VALUE) {
+      deadlineTimeout.timeout(remainingNanos, TimeUnit.NANOSECONDS);
+    }
+    deadlineTimeout.enter();
+    Response response;
+    try {
+      hedgingTimeout.enter();
+      try {
+        hedgedCall.execute();
+      } finally {
+        hedgingTimeout.exit();
+      }
+      response = hedgedCall.await();
+    } catch (IOException | RuntimeException e) {
+      hedgedCall.cancel();
+      if (deadlineTimeout.exit()) {
+        throw new DeadlineExceededException(e instanceof IOException ? (IOException) e : null);
+      }
+      throw e;
+    }
+    if (deadlineTimeout.exit()) {
+      // The calls have been cancelled, the body cannot be read.
+      response.close();
+      throw new DeadlineExceededException(null);
+    }
+    return response;
+  }
+
+  /** Thrown when the deadline has been reached. */
+  private static class DeadlineExceededException extends InterruptedIOException {
+    private static final long serialVersionUID = 1L;
+
+    DeadlineExceededException(IOException cause) {
+      super("Deadline exceeded");
+      initCause(cause);
+    }
+  }
+
+  /**
+   * Runs several calls for the same request; the first response wins, and the other calls are
+   * cancelled.
+   *
+   * <p>The first call is executed on the calling thread, and the hedged one on another thread; both
+   * are thus executed outside of the {@linkplain okhttp3.Dispatcher dispatcher's} limits, so that
+   * time spent waiting for other calls isn't mistaken for latency.
+   */
+  private static class HedgedCall implements Callback {
+    private final Call.Factory callFactory;
+    private final Request request;
+    private final List<Call> calls = new ArrayList<>(2);
+
+    private int pending;
+    private boolean done;
+    private Response response;
+    private IOException failure;
+
+    HedgedCall(Call.Factory callFactory, Request request) {
+      this.callFactory = callFactory;
+      this.request = request;
+    }
+
+    /** Executes the first call, on the current thread. */
+    void execute() {
+      Call call;
+      synchronized (this) {
+        call = newCall();
+      }
+      CallExecutor.execute(call, this);
+    }
+
+    /** Executes a second call on another thread, unless a call has already completed. */
+    void hedge() {
+      Call call;
+      synchronized (this) {
+        if (done) {
+          return;
+        }
+        call = newCall();
+      }
+      CallExecutor.enqueue(call, this);
+    }
+
+    private Call newCall() {
+      Call call = callFactory.newCall(request);
+      calls.add(call);
+      pending++;
+      return call;
+    }
+
+    /** Waits for a response, or for all calls to fail or be cancelled. */
+    synchronized Response await() throws IOException {
+      try {
+        while (!done) {
+          wait();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        InterruptedIOException ioe = new InterruptedIOException();
+        ioe.initCause(e);
+        throw ioe;
+      }
+      if (response == null) {
+        throw (failure != null) ? failure : new InterruptedIOException("Canceled");
+      }
+      Response response = this.response;
+      // The caller now owns the response.
+      this.response = null;
+      return response;
+    }
+
+    /** Cancels all calls; responses received in the meantime or afterwards are closed. */
+    void cancel() {
+      Response response;
+      synchronized (this) {
+        done = true;
+        response = this.response;
+        this.response = null;
+        notifyAll();
+      }
+      if (response != null) {
+        response.close();
+      }
+      cancelAllBut(null);
+    }
+
+    private void cancelAllBut(Call winner) {
+      List<Call> calls;
+      synchronized (this) {
+        calls = new ArrayList<>(this.calls);
+      }
+      for (Call call : calls) {
+        if (call != winner) {
+          call.cancel();
+        }
+      }
+    }
+
+    @Override
+    public void onFailure(Call call, IOException e) {
+      synchronized (this) {
+        pending--;
+        if (done) {
+          return;
+        }
+        failure = e;
+        if (pending == 0) {
+          done = true;
+          notifyAll();
+        }
+      }
+    }
+
+    @Override
+    public void onResponse(Call call, Response response) {
+      boolean won = false;
+      synchronized (this) {
+        pending--;
+        if (!done) {
+          done = true;
+          won = true;
+          this.response = response;
+          notifyAll();
+        }
+      }
+      if (won) {
+        cancelAllBut(call);
+      } else {
+        // Another call won the race.
+        response.close();
+      }
+    }
+  }
+}
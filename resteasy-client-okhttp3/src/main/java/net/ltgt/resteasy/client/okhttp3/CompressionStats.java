@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.client.okhttp3;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of the request bodies compressed by an {@link OkHttpClientEngine}.
+ *
+ * <p>Bodies are counted each time they're written, so bodies replayed by OkHttp (e.g. when retrying
+ * on connection failure, or for interceptors that read the request body) are counted several times.
+ *
+ * @see OkHttpClientEngine#getCompressionStats()
+ */
+public final class CompressionStats {
+  private final long bodyCount;
+  private final long uncompressedBytes;
+  private final long compressedBytes;
+
+  private CompressionStats(long bodyCount, long uncompressedBytes, long compressedBytes) {
+    this.bodyCount = bodyCount;
+    this.uncompressedBytes = uncompressedBytes;
+    this.compressedBytes = compressedBytes;
+  }
+
+  /** Returns the number of request bodies compressed. */
+  public long getBodyCount() {
+    return bodyCount;
+  }
+
+  /** Returns the total size of the request bodies before compression. */
+  public long getUncompressedBytes() {
+    return uncompressedBytes;
+  }
+
+  /** Returns the total size of the request bodies after compression. */
+  public long getCompressedBytes() {
+    return compressedBytes;
+  }
+
+  @Override
+  public String toString() {
+    return "CompressionStats{bodies="
+        + bodyCount
+        + ", uncompressedBytes="
+        + uncompressedBytes
+        + ", compressedBytes="
+        + compressedBytes
+        + "}";
+  }
+
+  /** Counts the bytes as request bodies are written. */
+  static class Counter {
+    private final AtomicLong bodyCount = new AtomicLong();
+    private final AtomicLong uncompressedBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+
+    void record(long uncompressedBytes, long compressedBytes) {
+      this.bodyCount.incrementAndGet();
+      this.uncompressedBytes.addAndGet(uncompressedBytes);
+      this.compressedBytes.addAndGet(compressedBytes);
+    }
+
+    CompressionStats snapshot() {
+      return new CompressionStats(bodyCount.get(), uncompressedBytes.get(), compressedBytes.get());
+    }
+  }
+}
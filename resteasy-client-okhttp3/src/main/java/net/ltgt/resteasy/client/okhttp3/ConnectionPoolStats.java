@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.client.okhttp3;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+
+/**
+ * A snapshot of the state of the {@link ConnectionPool} and {@link Dispatcher} of an {@link
+ * OkHttpClientEngine}.
+ *
+ * <p>The values are read one after the other without locking, so they might be slightly
+ * inconsistent with each other while calls are being made.
+ *
+ * @see OkHttpClientEngine#getConnectionPoolStats()
+ */
+public final class ConnectionPoolStats {
+  private final int connectionCount;
+  private final int idleConnectionCount;
+  private final int runningCallCount;
+  private final int queuedCallCount;
+  private final Map<String, Integer> runningCallsPerHost;
+
+  ConnectionPoolStats(ConnectionPool connectionPool, Dispatcher dispatcher) {
+    this.connectionCount = connectionPool.connectionCount();
+    this.idleConnectionCount = connectionPool.idleConnectionCount();
+    this.queuedCallCount = dispatcher.queuedCallsCount();
+    Map<String, Integer> runningCallsPerHost = new LinkedHashMap<>();
+    int runningCallCount = 0;
+    for (Call call : dispatcher.runningCalls()) {
+      String host = call.request().url().host();
+      Integer count = runningCallsPerHost.get(host);
+      runningCallsPerHost.put(host, count == null ? 1 : count + 1);
+      runningCallCount++;
+    }
+    this.runningCallCount = runningCallCount;
+    this.runningCallsPerHost = Collections.unmodifiableMap(runningCallsPerHost);
+  }
+
+  /** Returns the number of connections in the pool, either idle or in use. */
+  public int getConnectionCount() {
+    return connectionCount;
+  }
+
+  /** Returns the number of idle connections in the pool. */
+  public int getIdleConnectionCount() {
+    return idleConnectionCount;
+  }
+
+  /** Returns the number of connections in the pool that are currently in use. */
+  public int getActiveConnectionCount() {
+    return Math.max(0, connectionCount - idleConnectionCount);
+  }
+
+  /** Returns the number of calls currently running, both synchronous and asynchronous. */
+  public int getRunningCallCount() {
+    return runningCallCount;
+  }
+
+  /**
+   * Returns the number of asynchronous calls waiting for the {@link Dispatcher} to run them,
+   * because its {@linkplain Dispatcher#getMaxRequests() max requests} or {@linkplain
+   * Dispatcher#getMaxRequestsPerHost() max requests per host} has been reached.
+   */
+  public int getQueuedCallCount() {
+    return queuedCallCount;
+  }
+
+  /** Returns the number of calls currently running, per host. */
+  public Map<String, Integer> getRunningCallsPerHost() {
+    return runningCallsPerHost;
+  }
+
+  @Override
+  public String toString() {
+    return "ConnectionPoolStats{connections="
+        + connectionCount
+        + ", idle="
+        + idleConnectionCount
+        + ", runningCalls="
+        + runningCallCount
+        + ", queuedCalls="
+        + queuedCallCount
+        + ", runningCallsPerHost="
+        + runningCallsPerHost
+        + "}";
+  }
+}
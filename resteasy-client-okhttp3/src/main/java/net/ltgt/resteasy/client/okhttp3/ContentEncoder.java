@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.client.okhttp3;
+
+import okio.GzipSink;
+import okio.Sink;
+
+/**
+ * Encodes request bodies for a given {@code Content-Encoding}.
+ *
+ * @see OkHttpClientEngine#setRequestCompression(ContentEncoder, long)
+ */
+public interface ContentEncoder {
+  /** Encodes request bodies with gzip. */
+  ContentEncoder GZIP =
+      new ContentEncoder() {
+        @Override
+        public String getEncoding() {
+          return "gzip";
+        }
+
+        @Override
+        public Sink encode(Sink sink) {
+          return new GzipSink(sink);
+        }
+      };
+
+  /** Returns the value of the {@code Content-Encoding} request header, e.g. {@code gzip}. */
+  String getEncoding();
+
+  /**
+   * Returns a sink that encodes the bytes written to it into the given sink.
+   *
+   * <p>Closing the returned sink must finish the encoding and close the given sink.
+   */
+  Sink encode(Sink sink);
+}
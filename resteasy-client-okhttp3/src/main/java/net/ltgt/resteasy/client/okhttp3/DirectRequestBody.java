@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.client.okhttp3;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.WriterInterceptor;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+import org.jboss.resteasy.client.jaxrs.internal.ClientInvocation;
+import org.jboss.resteasy.plugins.interceptors.encoding.GZIPEncodingInterceptor;
+import org.jboss.resteasy.plugins.providers.ByteArrayProvider;
+import org.jboss.resteasy.plugins.providers.FileProvider;
+
+/**
+ * Creates {@link RequestBody request bodies} that read {@link File}, {@link Path}, {@code byte[]}
+ * and {@link ByteBuffer} entities directly, rather than having them written to a buffer by a {@link
+ * MessageBodyWriter}.
+ *
+ * <p>Such bodies have a known length, can be replayed, and files are streamed from disk.
+ */
+final class DirectRequestBody {
+  private DirectRequestBody() {
+    // non-instantiable
+  }
+
+  /**
+   * Returns a request body for the entity of the request, or {@code null} if it needs to be written
+   * by a {@link MessageBodyWriter}.
+   *
+   * <p>Entities are only read directly when there are no {@link WriterInterceptor}s (other than
+   * Resteasy's built-in {@link GZIPEncodingInterceptor} when it has nothing to encode), and:
+   *
+   * <ul>
+   *   <li>for {@link File} and {@code byte[]}, when the {@link MessageBodyWriter} that would be
+   *       used is Resteasy's built-in one, which writes them as-is;
+   *   <li>for {@link Path} and {@link ByteBuffer}, when there's no {@link MessageBodyWriter} for
+   *       them (Resteasy has no built-in one).
+   * </ul>
+   */
+  static RequestBody create(ClientInvocation request, MediaType contentType) {
+    Object entity = request.getEntity();
+    if (entity == null
+        || request.getHeaders().getMediaType() == null
+        || hasEffectiveWriterInterceptors(request)) {
+      return null;
+    }
+    MessageBodyWriter<?> writer = findWriter(request, entity);
+    if (entity instanceof byte[]) {
+      return (writer instanceof ByteArrayProvider)
+          ? RequestBody.create(contentType, (byte[]) entity)
+          : null;
+    }
+    if (entity instanceof File) {
+      return (writer instanceof FileProvider)
+          ? RequestBody.create(contentType, (File) entity)
+          : null;
+    }
+    if (entity instanceof Path) {
+      return (writer == null) ? createPathRequestBody(contentType, (Path) entity) : null;
+    }
+    if (entity instanceof ByteBuffer) {
+      return (writer == null)
+          ? createByteBufferRequestBody(contentType, (ByteBuffer) entity)
+          : null;
+    }
+    return null;
+  }
+
+  /**
+   * Returns whether the request has {@link WriterInterceptor}s that could change the entity.
+   *
+   * <p>Resteasy registers its {@link GZIPEncodingInterceptor} on every client; it only compresses
+   * the entity when the request has a {@code Content-Encoding: gzip} header, and otherwise proceeds
+   * without touching it.
+   */
+  private static boolean hasEffectiveWriterInterceptors(ClientInvocation request) {
+    WriterInterceptor[] writerInterceptors = request.getWriterInterceptors();
+    if (writerInterceptors == null) {
+      return false;
+    }
+    for (WriterInterceptor writerInterceptor : writerInterceptors) {
+      if (!(writerInterceptor instanceof GZIPEncodingInterceptor)
+          || request.getHeaders().getHeader(HttpHeaders.CONTENT_ENCODING) != null) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static MessageBodyWriter<?> findWriter(ClientInvocation request, Object entity) {
+    if (!(entity instanceof byte[]
+        || entity instanceof File
+        || entity instanceof Path
+        || entity instanceof ByteBuffer)) {
+      return null;
+    }
+    return request
+        .getClientConfiguration()
+        .getMessageBodyWriter(
+            entity.getClass(),
+            request.getEntityGenericType(),
+            request.getEntityAnnotations(),
+            request.getHeaders().getMediaType());
+  }
+
+  private static RequestBody createPathRequestBody(final MediaType contentType, final Path path) {
+    return new RequestBody() {
+      @Override
+      public long contentLength() throws IOException {
+        return Files.size(path);
+      }
+
+      @Override
+      public MediaType contentType() {
+        return contentType;
+      }
+
+      @Override
+      public void writeTo(BufferedSink sink) throws IOException {
+        try (Source source = Okio.source(path)) {
+          sink.writeAll(source);
+        }
+      }
+    };
+  }
+
+  private static RequestBody createByteBufferRequestBody(
+      final MediaType contentType, final ByteBuffer buffer) {
+    return new RequestBody() {
+      @Override
+      public long contentLength() {
+        return buffer.remaining();
+      }
+
+      @Override
+      public MediaType contentType() {
+        return contentType;
+      }
+
+      @Override
+      public void writeTo(BufferedSink sink) throws IOException {
+        // Use a duplicate so the body can be replayed, and the entity is left untouched.
+        ByteBuffer content = buffer.duplicate();
+        if (content.hasArray()) {
+          sink.write(
+              content.array(), content.arrayOffset() + content.position(), content.remaining());
+          return;
+        }
+        byte[] chunk = new byte[Math.min(8192, content.remaining())];
+        while (content.hasRemaining()) {
+          int length = Math.min(chunk.length, content.remaining());
+          content.get(chunk, 0, length);
+          sink.write(chunk, 0, length);
+        }
+      }
+    };
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.client.okhttp3;
+
+import java.io.IOException;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+import okio.Sink;
+
+/**
+ * A {@link RequestBody} encoded on the fly by a {@link ContentEncoder} while it's being written.
+ *
+ * <p>The encoded length isn't known in advance, so the body is sent using chunked transfer
+ * encoding. It can be replayed if the wrapped body can.
+ */
+class EncodedRequestBody extends RequestBody {
+  private final RequestBody delegate;
+  private final ContentEncoder encoder;
+  private final CompressionStats.Counter counter;
+
+  EncodedRequestBody(
+      RequestBody delegate, ContentEncoder encoder, CompressionStats.Counter counter) {
+    this.delegate = delegate;
+    this.encoder = encoder;
+    this.counter = counter;
+  }
+
+  @Override
+  public MediaType contentType() {
+    return delegate.contentType();
+  }
+
+  @Override
+  public long contentLength() {
+    return -1;
+  }
+
+  @Override
+  public void writeTo(BufferedSink sink) throws IOException {
+    // The sink belongs to OkHttp, so don't close it when closing the encoder.
+    CountingSink encoded = new CountingSink(sink, false);
+    CountingSink decoded = new CountingSink(encoder.encode(encoded), true);
+    BufferedSink bufferedSink = Okio.buffer(decoded);
+    // Always close the encoder, as it might hold native resources (e.g. a Deflater)
+    Throwable primaryExc = null;
+    try {
+      delegate.writeTo(bufferedSink);
+    } catch (Throwable t) {
+      primaryExc = t;
+      throw t;
+    } finally {
+      if (primaryExc != null) {
+        try {
+          bufferedSink.close();
+        } catch (Throwable suppressedExc) {
+          primaryExc.addSuppressed(suppressedExc);
+        }
+      } else {
+        bufferedSink.close();
+      }
+    }
+    counter.record(decoded.count, encoded.count);
+  }
+
+  private static class CountingSink extends ForwardingSink {
+    private final boolean closeDelegate;
+
+    long count;
+
+    CountingSink(Sink delegate, boolean closeDelegate) {
+      super(delegate);
+      this.closeDelegate = closeDelegate;
+    }
+
+    @Override
+    public void write(Buffer source, long byteCount) throws IOException {
+      super.write(source, byteCount);
+      count += byteCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closeDelegate) {
+        super.close();
+      } else {
+        flush();
+      }
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.client.okhttp3;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.file.Path;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+
+/**
+ * Reads response entities as {@link File} or {@link Path} using {@link ResponseBodyTransfer}.
+ *
+ * <p>The entity is written to a new temporary file, in the given directory or the default
+ * temporary-file directory; it's the responsibility of the caller to delete it.
+ *
+ * <p>Usage:
+ *
+ * <pre><code>
+ * new ResteasyClientBuilder()
+ *     .httpEngine(new OkHttpClientEngine(okHttpClient))
+ *     .register(new FileEntityReader())
+ *     .build()
+ * </code></pre>
+ */
+@Consumes({"*/*"})
+public class FileEntityReader implements MessageBodyReader<Object> {
+  private static final String PREFIX = "okhttp";
+  private static final String SUFFIX = ".tmp";
+
+  private final File directory;
+
+  public FileEntityReader() {
+    this(null);
+  }
+
+  /** @param directory the directory to create files in, or {@code null} for the default one. */
+  public FileEntityReader(File directory) {
+    this.directory = directory;
+  }
+
+  @Override
+  public boolean isReadable(
+      Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+    return type == File.class || type == Path.class;
+  }
+
+  @Override
+  public Object readFrom(
+      Class<Object> type,
+      Type genericType,
+      Annotation[] annotations,
+      MediaType mediaType,
+      MultivaluedMap<String, String> httpHeaders,
+      InputStream entityStream)
+      throws IOException, WebApplicationException {
+    File file = File.createTempFile(PREFIX, SUFFIX, directory);
+    try {
+      ResponseBodyTransfer.transferTo(entityStream, file);
+    } catch (IOException | RuntimeException e) {
+      if (!file.delete()) {
+        file.deleteOnExit();
+      }
+      throw e;
+    }
+    return Path.class.equals(type) ? file.toPath() : file;
+  }
+}
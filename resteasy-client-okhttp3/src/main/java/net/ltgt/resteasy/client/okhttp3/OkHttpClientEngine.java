@@ -15,26 +15,53 @@
  */
 package net.ltgt.resteasy.client.okhttp3;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
 import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.InvocationCallback;
+import javax.ws.rs.client.ResponseProcessingException;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Providers;
+import javax.ws.rs.ext.WriterInterceptor;
+import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
 import okhttp3.Headers;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import okio.Buffer;
 import okio.BufferedSink;
 import org.jboss.resteasy.client.jaxrs.ClientHttpEngine;
+import org.jboss.resteasy.client.jaxrs.internal.AbortedResponse;
+import org.jboss.resteasy.client.jaxrs.internal.ClientConfiguration;
 import org.jboss.resteasy.client.jaxrs.internal.ClientInvocation;
+import org.jboss.resteasy.client.jaxrs.internal.ClientRequestContextImpl;
 import org.jboss.resteasy.client.jaxrs.internal.ClientResponse;
-import org.jboss.resteasy.util.CaseInsensitiveMap;
+import org.jboss.resteasy.client.jaxrs.internal.ClientResponseContextImpl;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
 
 /**
  * Implementation of {@link ClientHttpEngine} based on OkHttp.
@@ -47,16 +74,54 @@ import org.jboss.resteasy.util.CaseInsensitiveMap;
  *     .build()
  * </code></pre>
  *
+ * <p>Resteasy runs {@link javax.ws.rs.client.AsyncInvoker asynchronous invocations} by blocking a
+ * thread from its executor for the duration of the call. To rather use OkHttp's asynchronous calls,
+ * use {@link #submit(Invocation, InvocationCallback)} instead:
+ *
+ * <pre><code>
+ * engine.submit(client.target(uri).request().buildGet(), callback);
+ * </code></pre>
+ *
+ * <p>{@link java.io.File}, {@link java.nio.file.Path}, {@code byte[]} and {@link
+ * java.nio.ByteBuffer} entities are sent as-is, without first being copied to a buffer (files are
+ * streamed from disk), as long as no {@link WriterInterceptor} is registered.
+ *
  * @author Thomas Broyer <t.broyer@ltgt.net>
  */
 public class OkHttpClientEngine implements ClientHttpEngine {
 
-  private final OkHttpClient client;
+  private final boolean ownsClient;
+  private final CacheStats.Counter cacheCounter = new CacheStats.Counter();
+  private final CompressionStats.Counter compressionCounter = new CompressionStats.Counter();
 
+  private OkHttpClient client;
+  private boolean ownsConnectionPool;
+  private Cache ownedCache;
   private SSLContext sslContext;
+  private long streamingThreshold = -1;
+  private long responseReadAheadSize;
+  private ContentEncoder requestEncoder;
+  private long requestCompressionThreshold;
+  private CallPolicy callPolicy;
+  private CallMetricsListener callMetricsListener;
+  private OkHttpClient instrumentedClient;
+  private final Set<Connection> seenConnections = CallMetricsInterceptor.newConnectionSet();
 
   public OkHttpClientEngine(OkHttpClient client) {
+    this(client, false);
+  }
+
+  /**
+   * Creates an engine using the given client.
+   *
+   * @param ownsClient whether the engine owns the client, and should release its resources when it
+   *     is {@linkplain #close() closed}: the client's dispatcher executor service is then shut down
+   *     and its connection pool evicted, so the client (and any client sharing those) cannot be
+   *     used after the engine has been closed.
+   */
+  public OkHttpClientEngine(OkHttpClient client, boolean ownsClient) {
     this.client = client;
+    this.ownsClient = ownsClient;
   }
 
   @Override
@@ -64,10 +129,246 @@ public class OkHttpClientEngine implements ClientHttpEngine {
     return sslContext;
   }
 
+  /**
+   * Sets the SSL context used to create the client's sockets, along with the platform's default
+   * trust manager.
+   *
+   * <p>The trust manager is only used by OkHttp to clean certificate chains for {@linkplain
+   * okhttp3.CertificatePinner certificate pinning}; if the SSL context uses a different one and
+   * certificate pinning is used, use {@link #setSslContext(SSLContext, X509TrustManager)} instead.
+   *
+   * <p>This must be called before the engine is used.
+   */
   public void setSslContext(SSLContext sslContext) {
+    setSslContext(sslContext, defaultTrustManager());
+  }
+
+  /**
+   * Sets the SSL context used to create the client's sockets, along with the trust manager it uses.
+   *
+   * <p>This must be called before the engine is used.
+   *
+   * @see OkHttpClient.Builder#sslSocketFactory(javax.net.ssl.SSLSocketFactory, X509TrustManager)
+   */
+  public void setSslContext(SSLContext sslContext, X509TrustManager trustManager) {
+    setClient(
+        client.newBuilder().sslSocketFactory(sslContext.getSocketFactory(), trustManager).build());
     this.sslContext = sslContext;
   }
 
+  private static X509TrustManager defaultTrustManager() {
+    try {
+      TrustManagerFactory trustManagerFactory =
+          TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+      trustManagerFactory.init((KeyStore) null);
+      for (TrustManager trustManager : trustManagerFactory.getTrustManagers()) {
+        if (trustManager instanceof X509TrustManager) {
+          return (X509TrustManager) trustManager;
+        }
+      }
+      throw new IllegalStateException("No default X509TrustManager");
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public List<Protocol> getProtocols() {
+    return client.protocols();
+  }
+
+  /**
+   * Sets the protocols the client will use, in order of preference.
+   *
+   * <p>OkHttp uses HTTP/2 by default when the server supports it, negotiated through ALPN during
+   * the TLS handshake, multiplexing concurrent calls to the same host over a single connection.
+   * This can be used to disable HTTP/2, with {@code Arrays.asList(Protocol.HTTP_1_1)}. Note that
+   * asynchronous calls are also limited by the {@linkplain
+   * okhttp3.Dispatcher#setMaxRequestsPerHost(int) dispatcher}.
+   *
+   * <p>The protocol actually used for a given response can be retrieved with {@link
+   * #getProtocol(javax.ws.rs.core.Response)}.
+   *
+   * <p>This must be called before the engine is used.
+   *
+   * @see OkHttpClient.Builder#protocols(List)
+   */
+  public void setProtocols(List<Protocol> protocols) {
+    setClient(client.newBuilder().protocols(protocols).build());
+  }
+
+  public long getStreamingThreshold() {
+    return streamingThreshold;
+  }
+
+  /**
+   * Sets the size (in bytes) above which request bodies are streamed to the server rather than
+   * entirely buffered in memory.
+   *
+   * <p>Request bodies are buffered until they exceed that size; the request is then sent with the
+   * headers as they are at that point, using chunked transfer encoding, and the rest of the body is
+   * sent as it's being written. This means that header changes made by {@link WriterInterceptor}s
+   * after that point will be ignored, and that the body cannot be replayed by OkHttp (e.g. when
+   * retrying on connection failure, or for interceptors that read the request body.)
+   *
+   * <p>Streamed requests are executed on a dedicated thread while the body is being written from
+   * the calling thread; like other synchronous invocations, they aren't subject to the {@linkplain
+   * okhttp3.Dispatcher#setMaxRequestsPerHost(int) dispatcher's limits}.
+   *
+   * <p>Defaults to {@code -1}, meaning request bodies are never streamed.
+   */
+  public void setStreamingThreshold(long streamingThreshold) {
+    this.streamingThreshold = streamingThreshold;
+  }
+
+  public long getResponseReadAheadSize() {
+    return responseReadAheadSize;
+  }
+
+  /**
+   * Sets the number of bytes (at most) that reads from response entity streams wait to have
+   * received from the network before returning.
+   *
+   * <p>By default, reads return as soon as any byte has been received. Reading ahead means fewer,
+   * larger, reads for consumers reading the stream with large buffers, at the expense of latency;
+   * it should thus only be used for large downloads, not for streaming responses (e.g. server-sent
+   * events.) Reads never wait for more bytes than requested, nor past the end of the body.
+   *
+   * <p>Defaults to {@code 0}, meaning no read-ahead.
+   *
+   * @see ResponseBodyTransfer
+   */
+  public void setResponseReadAheadSize(long responseReadAheadSize) {
+    this.responseReadAheadSize = responseReadAheadSize;
+  }
+
+  public ContentEncoder getRequestEncoder() {
+    return requestEncoder;
+  }
+
+  public long getRequestCompressionThreshold() {
+    return requestCompressionThreshold;
+  }
+
+  /**
+   * Enables compression of request bodies.
+   *
+   * <p>Request bodies whose size is at least {@code threshold} bytes, or whose size is unknown
+   * because they're {@linkplain #setStreamingThreshold(long) streamed}, are encoded by the given
+   * encoder while they're being sent, using chunked transfer encoding, and the {@code
+   * Content-Encoding} request header is set accordingly. Requests that already have a {@code
+   * Content-Encoding} (e.g. set by a {@link WriterInterceptor} that compresses the entity) are left
+   * untouched.
+   *
+   * <p>Responses are transparently decompressed by OkHttp itself, as long as the {@code
+   * Accept-Encoding} request header isn't set explicitly.
+   *
+   * @param encoder the encoder, e.g. {@link ContentEncoder#GZIP}; or {@code null} to disable
+   *     compression (the default)
+   * @param threshold the minimum size of request bodies to compress, in bytes
+   * @see #getCompressionStats()
+   */
+  public void setRequestCompression(ContentEncoder encoder, long threshold) {
+    this.requestEncoder = encoder;
+    this.requestCompressionThreshold = threshold;
+  }
+
+  /** Returns the statistics of request bodies compressed so far. */
+  public CompressionStats getCompressionStats() {
+    return compressionCounter.snapshot();
+  }
+
+  public CallPolicy getCallPolicy() {
+    return callPolicy;
+  }
+
+  /**
+   * Sets the retries, hedging and deadline policy applied to synchronous invocations.
+   *
+   * <p>Defaults to {@code null}, meaning requests are sent once, without deadline (other than
+   * OkHttp's connect, read and write timeouts).
+   */
+  public void setCallPolicy(CallPolicy callPolicy) {
+    this.callPolicy = callPolicy;
+  }
+
+  public CallMetricsListener getCallMetricsListener() {
+    return callMetricsListener;
+  }
+
+  /**
+   * Sets the listener notified of the {@link CallMetrics} of each call.
+   *
+   * <p>The metrics are collected by interceptors added to a client {@linkplain
+   * OkHttpClient#newBuilder() derived} from the one given to the constructor, sharing its
+   * connection pool and dispatcher.
+   *
+   * <p>Defaults to {@code null}, meaning no metrics are collected.
+   */
+  public void setCallMetricsListener(CallMetricsListener callMetricsListener) {
+    this.callMetricsListener = callMetricsListener;
+    setClient(client);
+  }
+
+  private void setClient(OkHttpClient client) {
+    this.client = client;
+    this.instrumentedClient =
+        (callMetricsListener == null)
+            ? null
+            : CallMetricsInterceptor.instrument(client, callMetricsListener, seenConnections);
+  }
+
+  /**
+   * Replaces the connection pool of the client with a new one, owned by the engine: it will be
+   * evicted when the engine is {@linkplain #close() closed}.
+   *
+   * <p>This must be called before the engine is used.
+   *
+   * @param maxIdleConnections the maximum number of idle connections to keep in the pool
+   * @param keepAliveDuration the time after which an idle connection is evicted from the pool
+   * @see ConnectionPool#ConnectionPool(int, long, TimeUnit)
+   */
+  public void setConnectionPool(int maxIdleConnections, long keepAliveDuration, TimeUnit timeUnit) {
+    setClient(
+        client
+            .newBuilder()
+            .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveDuration, timeUnit))
+            .build());
+    ownsConnectionPool = true;
+  }
+
+  /**
+   * Sets an HTTP cache in the given directory, owned by the engine: it will be closed when the
+   * engine is {@linkplain #close() closed}.
+   *
+   * <p>Responses are cached, served from the cache, and revalidated, according to their {@code
+   * Cache-Control}, {@code Expires}, {@code ETag} and {@code Last-Modified} headers. A directory
+   * must not be used by two caches at the same time.
+   *
+   * <p>This must be called before the engine is used.
+   *
+   * @param maxSize the maximum size of the cache, in bytes
+   * @see Cache#Cache(File, long)
+   * @see #getCacheStats()
+   */
+  public void setCache(File directory, long maxSize) {
+    Cache cache = new Cache(directory, maxSize);
+    setClient(client.newBuilder().cache(cache).build());
+    ownedCache = cache;
+  }
+
+  /**
+   * Returns the statistics of responses received so far, if the client has an HTTP cache (whether
+   * {@linkplain #setCache(File, long) set through the engine} or not); or {@code null} otherwise.
+   */
+  public CacheStats getCacheStats() {
+    return (client.cache() == null) ? null : cacheCounter.snapshot();
+  }
+
+  /** Returns a snapshot of the state of the client's connection pool and dispatcher. */
+  public ConnectionPoolStats getConnectionPoolStats() {
+    return new ConnectionPoolStats(client.connectionPool(), client.dispatcher());
+  }
+
   @Override
   public HostnameVerifier getHostnameVerifier() {
     return client.hostnameVerifier();
@@ -75,28 +376,231 @@ public class OkHttpClientEngine implements ClientHttpEngine {
 
   @Override
   public ClientResponse invoke(ClientInvocation request) {
-    Request req = createRequest(request);
     Response response;
     try {
-      response = client.newCall(req).execute();
+      response = execute(request);
     } catch (IOException e) {
       throw new ProcessingException("Unable to invoke request", e);
     }
     return createResponse(request, response);
   }
 
-  private Request createRequest(ClientInvocation request) {
-    Request.Builder builder =
-        new Request.Builder()
-            .method(request.getMethod(), createRequestBody(request))
-            .url(request.getUri().toString());
-    for (Map.Entry<String, List<String>> header : request.getHeaders().asMap().entrySet()) {
+  /**
+   * Asynchronously invokes the request, using OkHttp's {@link okhttp3.Dispatcher} rather than
+   * blocking a thread.
+   *
+   * @see #submit(Invocation, InvocationCallback)
+   */
+  public Future<javax.ws.rs.core.Response> submit(Invocation invocation) {
+    return submit(invocation, null);
+  }
+
+  /**
+   * Asynchronously invokes the request, using OkHttp's {@link okhttp3.Dispatcher} rather than
+   * blocking a thread.
+   *
+   * <p>The invocation must have been built by a JAX-RS client using this engine. Request filters
+   * and writer interceptors are run on the calling thread, and the request body is always buffered
+   * (regardless of the {@link #setStreamingThreshold(long) streaming threshold}); response filters
+   * are run, and the callback notified, on OkHttp's callback thread.
+   *
+   * @param callback an optional callback notified of the outcome of the invocation; may be {@code
+   *     null}
+   */
+  public Future<javax.ws.rs.core.Response> submit(
+      Invocation invocation, InvocationCallback<javax.ws.rs.core.Response> callback) {
+    final ClientInvocation request = (ClientInvocation) invocation;
+    final ClientRequestContextImpl requestContext = new ClientRequestContextImpl(request);
+    InvocationFuture future =
+        new InvocationFuture(callback) {
+          @Override
+          protected javax.ws.rs.core.Response processResponse(Response response) {
+            Providers current = pushProviders(request);
+            try {
+              return filterResponse(request, requestContext, createResponse(request, response));
+            } finally {
+              popProviders(current);
+            }
+          }
+        };
+    Providers current = pushProviders(request);
+    try {
+      ClientResponse aborted = filterRequest(request, requestContext);
+      if (aborted != null) {
+        future.completed(filterResponse(request, requestContext, aborted));
+        return future;
+      }
+      Call call = newCall(createRequest(request, createRequestBody(request)));
+      future.setCall(call);
+      call.enqueue(future);
+    } catch (RuntimeException e) {
+      future.failed(e);
+    } finally {
+      popProviders(current);
+    }
+    return future;
+  }
+
+  private static Providers pushProviders(ClientInvocation request) {
+    Providers current = ResteasyProviderFactory.getContextData(Providers.class);
+    ResteasyProviderFactory.pushContext(Providers.class, request.getClientConfiguration());
+    return current;
+  }
+
+  private static void popProviders(Providers current) {
+    ResteasyProviderFactory.popContextData(Providers.class);
+    if (current != null) {
+      ResteasyProviderFactory.pushContext(Providers.class, current);
+    }
+  }
+
+  /**
+   * Runs the request filters, the same way as {@link ClientInvocation#invoke()}: failures other
+   * than {@link ProcessingException}s are wrapped into a {@link ProcessingException}.
+   */
+  private static ClientResponse filterRequest(
+      ClientInvocation request, ClientRequestContextImpl requestContext) {
+    ClientRequestFilter[] requestFilters = request.getRequestFilters();
+    if (requestFilters == null) {
+      return null;
+    }
+    for (ClientRequestFilter filter : requestFilters) {
+      try {
+        filter.filter(requestContext);
+      } catch (ProcessingException e) {
+        throw e;
+      } catch (IOException | RuntimeException e) {
+        throw new ProcessingException(e);
+      }
+      if (requestContext.getAbortedWithResponse() != null) {
+        return new AbortedResponse(
+            request.getClientConfiguration(), requestContext.getAbortedWithResponse());
+      }
+    }
+    return null;
+  }
+
+  /** Runs the response filters, the same way as {@link ClientInvocation#invoke()}. */
+  private static ClientResponse filterResponse(
+      ClientInvocation request, ClientRequestContextImpl requestContext, ClientResponse response) {
+    response.setProperties(request.getClientConfiguration().getMutableProperties());
+    ClientResponseFilter[] responseFilters = request.getResponseFilters();
+    if (responseFilters == null) {
+      return response;
+    }
+    ClientResponseContextImpl responseContext = new ClientResponseContextImpl(response);
+    for (ClientResponseFilter filter : responseFilters) {
+      try {
+        filter.filter(requestContext, responseContext);
+      } catch (ResponseProcessingException e) {
+        throw e;
+      } catch (IOException | RuntimeException e) {
+        throw new ResponseProcessingException(response, e);
+      }
+    }
+    return response;
+  }
+
+  private Response execute(ClientInvocation request) throws IOException {
+    RequestBody body;
+    if (request.getEntity() != null && streamingThreshold >= 0) {
+      body = DirectRequestBody.create(request, contentType(request));
+      if (body == null) {
+        return executeStreaming(request);
+      }
+    } else {
+      body = createRequestBody(request);
+    }
+    return execute(request, createRequest(request, body));
+  }
+
+  private Response execute(ClientInvocation request, Request httpRequest) throws IOException {
+    if (callPolicy != null) {
+      return callPolicy.execute(callFactory(), request, httpRequest);
+    }
+    return newCall(httpRequest).execute();
+  }
+
+  private Call.Factory callFactory() {
+    return (instrumentedClient != null) ? instrumentedClient : client;
+  }
+
+  private Call newCall(Request request) {
+    return callFactory().newCall(request);
+  }
+
+  private Response executeStreaming(ClientInvocation request) throws IOException {
+    SpillingOutputStream out = new SpillingOutputStream(request);
+    try {
+      // NOTE: this will invoke WriterInterceptors which can possibly change the request,
+      // so headers will only be read once the body has been written or reached the threshold.
+      request.writeRequestBody(out);
+      out.close();
+    } catch (IOException | RuntimeException e) {
+      if (out.isCallDone()) {
+        // The call failed (or the server responded early) while the body was being written.
+        return out.getResponse();
+      }
+      out.cancel();
+      throw e;
+    }
+    return out.getResponse();
+  }
+
+  private Request createRequest(ClientInvocation request, RequestBody body) {
+    Headers headers = createHeaders(request);
+    if (body != null && shouldEncode(body, headers)) {
+      body = new EncodedRequestBody(body, requestEncoder, compressionCounter);
+      headers =
+          headers
+              .newBuilder()
+              .set(HttpHeaders.CONTENT_ENCODING, requestEncoder.getEncoding())
+              .build();
+    }
+    return new Request.Builder()
+        .method(request.getMethod(), body)
+        .url(request.getUri().toString())
+        .headers(headers)
+        .tag(request)
+        .build();
+  }
+
+  private boolean shouldEncode(RequestBody body, Headers headers) {
+    if (requestEncoder == null || headers.get(HttpHeaders.CONTENT_ENCODING) != null) {
+      return false;
+    }
+    long contentLength;
+    try {
+      contentLength = body.contentLength();
+    } catch (IOException e) {
+      // Let it fail later, when the body is actually written.
+      contentLength = -1;
+    }
+    return contentLength < 0 || contentLength >= requestCompressionThreshold;
+  }
+
+  /**
+   * Converts the request headers in one go, rather than going through {@link
+   * org.jboss.resteasy.client.jaxrs.internal.ClientRequestHeaders#asMap()} (which copies them to an
+   * intermediate map) and adding them one by one to the {@link Request.Builder}.
+   */
+  private static Headers createHeaders(ClientInvocation request) {
+    MultivaluedMap<String, Object> headers = request.getHeaders().getHeaders();
+    int size = 0;
+    for (List<Object> headerValues : headers.values()) {
+      size += headerValues.size();
+    }
+    ClientConfiguration configuration = request.getClientConfiguration();
+    String[] namesAndValues = new String[size * 2];
+    int i = 0;
+    for (Map.Entry<String, List<Object>> header : headers.entrySet()) {
       String headerName = header.getKey();
-      for (String headerValue : header.getValue()) {
-        builder.addHeader(headerName, headerValue);
+      for (Object headerValue : header.getValue()) {
+        namesAndValues[i++] = headerName;
+        namesAndValues[i++] = configuration.toHeaderString(headerValue);
       }
     }
-    return builder.build();
+    return Headers.of(namesAndValues);
   }
 
   private RequestBody createRequestBody(final ClientInvocation request) {
@@ -104,6 +608,11 @@ public class OkHttpClientEngine implements ClientHttpEngine {
       return null;
     }
 
+    RequestBody body = DirectRequestBody.create(request, contentType(request));
+    if (body != null) {
+      return body;
+    }
+
     // NOTE: this will invoke WriterInterceptors which can possibly change the request,
     // so it must be done first, before reading any header.
     final Buffer buffer = new Buffer();
@@ -113,10 +622,11 @@ public class OkHttpClientEngine implements ClientHttpEngine {
       throw new RuntimeException(e);
     }
 
-    javax.ws.rs.core.MediaType mediaType = request.getHeaders().getMediaType();
-    final MediaType contentType =
-        (mediaType == null) ? null : MediaType.parse(mediaType.toString());
+    return createBufferedRequestBody(contentType(request), buffer);
+  }
 
+  private static RequestBody createBufferedRequestBody(
+      final MediaType contentType, final Buffer buffer) {
     return new RequestBody() {
       @Override
       public long contentLength() throws IOException {
@@ -135,65 +645,225 @@ public class OkHttpClientEngine implements ClientHttpEngine {
     };
   }
 
-  private ClientResponse createResponse(ClientInvocation request, final Response response) {
-    ClientResponse clientResponse =
-        new ClientResponse(request.getClientConfiguration()) {
-          private InputStream stream;
-
-          @Override
-          protected InputStream getInputStream() {
-            if (stream == null) {
-              stream = response.body().byteStream();
-            }
-            return stream;
-          }
+  private static MediaType contentType(ClientInvocation request) {
+    javax.ws.rs.core.MediaType mediaType = request.getHeaders().getMediaType();
+    return (mediaType == null) ? null : MediaType.parse(mediaType.toString());
+  }
 
-          @Override
-          protected void setInputStream(InputStream is) {
-            stream = is;
-          }
+  private ClientResponse createResponse(ClientInvocation request, Response response) {
+    if (client.cache() != null) {
+      cacheCounter.record(response);
+    }
 
-          @Override
-          public void releaseConnection() throws IOException {
-            // Stream might have been entirely replaced, so we need to close it independently from response.body()
-            Throwable primaryExc = null;
-            try {
-              if (stream != null) {
-                stream.close();
-              }
-            } catch (Throwable t) {
-              primaryExc = t;
-              throw t;
-            } finally {
-              if (primaryExc != null) {
-                try {
-                  response.body().close();
-                } catch (Throwable suppressedExc) {
-                  primaryExc.addSuppressed(suppressedExc);
-                }
-              } else {
-                response.body().close();
-              }
-            }
-          }
-        };
+    OkHttpClientResponse clientResponse =
+        new OkHttpClientResponse(request.getClientConfiguration(), response, responseReadAheadSize);
 
     clientResponse.setStatus(response.code());
-    clientResponse.setHeaders(transformHeaders(response.headers()));
+    clientResponse.setOkHttpHeaders(response.headers());
 
     return clientResponse;
   }
 
-  private MultivaluedMap<String, String> transformHeaders(Headers headers) {
-    MultivaluedMap<String, String> ret = new CaseInsensitiveMap<>();
-    for (int i = 0, l = headers.size(); i < l; i++) {
-      ret.add(headers.name(i), headers.value(i));
-    }
-    return ret;
+  /**
+   * Returns the protocol negotiated for the given response, or {@code null} if the response wasn't
+   * received by an {@code OkHttpClientEngine} (e.g. it was {@linkplain
+   * javax.ws.rs.client.ClientRequestContext#abortWith aborted} by a request filter.)
+   */
+  public static Protocol getProtocol(javax.ws.rs.core.Response response) {
+    return (response instanceof OkHttpClientResponse)
+        ? ((OkHttpClientResponse) response).response.protocol()
+        : null;
   }
 
+  /**
+   * Releases the resources owned by the engine.
+   *
+   * <p>If the engine {@linkplain #OkHttpClientEngine(OkHttpClient, boolean) owns the client}, its
+   * dispatcher executor service is shut down, letting already running calls complete. If it owns
+   * the client or the {@linkplain #setConnectionPool(int, long, TimeUnit) connection pool}, idle
+   * connections are evicted from the pool; connections still in use will be evicted once idle for
+   * the pool's keep-alive duration. If it owns the client or the {@linkplain #setCache(File, long)
+   * cache}, the cache is closed. Otherwise, this is a no-op.
+   */
   @Override
   public void close() {
-    // no-op
+    if (ownsClient) {
+      client.dispatcher().executorService().shutdown();
+    }
+    if (ownsClient || ownsConnectionPool) {
+      client.connectionPool().evictAll();
+    }
+    Cache cache = ownsClient ? client.cache() : ownedCache;
+    if (cache != null) {
+      try {
+        cache.close();
+      } catch (IOException e) {
+        throw new ProcessingException("Unable to close the cache", e);
+      }
+    }
+  }
+
+  private static class OkHttpClientResponse extends ClientResponse {
+    final Response response;
+    private final long readAheadSize;
+
+    private InputStream stream;
+
+    OkHttpClientResponse(ClientConfiguration configuration, Response response, long readAheadSize) {
+      super(configuration);
+      this.response = response;
+      this.readAheadSize = readAheadSize;
+    }
+
+    /**
+     * Copies the headers in a single pass, rather than through {@link #setHeaders}, which copies
+     * the given map again.
+     */
+    void setOkHttpHeaders(Headers headers) {
+      org.jboss.resteasy.core.Headers<Object> metadata = new org.jboss.resteasy.core.Headers<>();
+      for (int i = 0, l = headers.size(); i < l; i++) {
+        metadata.add(headers.name(i), headers.value(i));
+      }
+      this.metadata = metadata;
+    }
+
+    @Override
+    protected InputStream getInputStream() {
+      if (stream == null) {
+        stream = new SourceInputStream(response.body().source(), readAheadSize);
+      }
+      return stream;
+    }
+
+    @Override
+    protected void setInputStream(InputStream is) {
+      stream = is;
+    }
+
+    @Override
+    public void releaseConnection() throws IOException {
+      // Stream might have been entirely replaced, so we need to close it independently from response.body()
+      Throwable primaryExc = null;
+      try {
+        if (stream != null) {
+          stream.close();
+        }
+      } catch (Throwable t) {
+        primaryExc = t;
+        throw t;
+      } finally {
+        if (primaryExc != null) {
+          try {
+            response.body().close();
+          } catch (Throwable suppressedExc) {
+            primaryExc.addSuppressed(suppressedExc);
+          }
+        } else {
+          response.body().close();
+        }
+      }
+    }
+  }
+
+  /**
+   * Buffers the request body up to the {@link #getStreamingThreshold() streaming threshold}, then
+   * starts the call and streams the rest of the body.
+   */
+  private class SpillingOutputStream extends OutputStream {
+    private final ClientInvocation request;
+    private final Buffer buffer = new Buffer();
+
+    private StreamingRequestBody body;
+    private Call call;
+    private BlockingCallback callback;
+    private BufferedSink sink;
+
+    SpillingOutputStream(ClientInvocation request) {
+      this.request = request;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (sink == null) {
+        buffer.writeByte(b);
+        spillIfNeeded();
+      } else {
+        sink.writeByte(b);
+      }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (sink == null) {
+        buffer.write(b, off, len);
+        spillIfNeeded();
+      } else {
+        sink.write(b, off, len);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (sink != null) {
+        sink.flush();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (sink != null) {
+        sink.close();
+      }
+    }
+
+    private void spillIfNeeded() throws IOException {
+      if (buffer.size() <= streamingThreshold) {
+        return;
+      }
+      body = new StreamingRequestBody(contentType(request));
+      callback =
+          new BlockingCallback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+              // Unblock the writer if the call failed before consuming the whole body.
+              body.abort();
+              super.onFailure(call, e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+              body.abort();
+              super.onResponse(call, response);
+            }
+          };
+      call = newCall(createRequest(request, body));
+      // Don't go through the dispatcher, whose limits could leave the writer blocked until other
+      // calls to the same host complete.
+      CallExecutor.enqueue(call, callback);
+      sink = body.sink();
+      sink.write(buffer, buffer.size());
+    }
+
+    Response getResponse() throws IOException {
+      if (call == null) {
+        // The body is below the threshold, it can be sent (and replayed) as any buffered body.
+        return execute(
+            request,
+            createRequest(request, createBufferedRequestBody(contentType(request), buffer)));
+      }
+      return callback.await();
+    }
+
+    boolean isCallDone() {
+      return callback != null && callback.isDone();
+    }
+
+    void cancel() {
+      if (call != null) {
+        call.cancel();
+        // Unblock OkHttp if it's waiting for more of the body.
+        body.fail();
+      }
+    }
   }
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.client.okhttp3;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import okio.Okio;
+import okio.Sink;
+
+/**
+ * Transfers response bodies read by an {@link OkHttpClientEngine} to their final destination.
+ *
+ * <p>When given the entity stream of a response received by an {@link OkHttpClientEngine} (e.g.
+ * from {@code response.readEntity(InputStream.class)}, provided no {@link
+ * javax.ws.rs.ext.ReaderInterceptor} wrapped it), the buffers read from the network are handed
+ * directly to the destination, rather than being copied to an intermediate array. Other streams are
+ * copied the usual way.
+ *
+ * <p>The input stream is read to the end, but neither it nor the destination is closed.
+ */
+public final class ResponseBodyTransfer {
+  private ResponseBodyTransfer() {
+    // non-instantiable
+  }
+
+  /** Transfers the rest of the stream to the output stream, and returns the number of bytes. */
+  public static long transferTo(InputStream in, OutputStream out) throws IOException {
+    return transferTo(in, Okio.sink(out));
+  }
+
+  /** Transfers the rest of the stream to the channel, and returns the number of bytes. */
+  public static long transferTo(InputStream in, WritableByteChannel out) throws IOException {
+    return transferTo(in, Okio.sink(Channels.newOutputStream(out)));
+  }
+
+  /**
+   * Transfers the rest of the stream to the file, replacing its content, and returns the number of
+   * bytes.
+   */
+  public static long transferTo(InputStream in, File file) throws IOException {
+    try (Sink sink = Okio.sink(file)) {
+      return transferTo(in, sink);
+    }
+  }
+
+  private static long transferTo(InputStream in, Sink sink) throws IOException {
+    long size;
+    if (in instanceof SourceInputStream) {
+      size = ((SourceInputStream) in).transferTo(sink);
+    } else {
+      size = Okio.buffer(Okio.source(in)).readAll(sink);
+    }
+    sink.flush();
+    return size;
+  }
+}
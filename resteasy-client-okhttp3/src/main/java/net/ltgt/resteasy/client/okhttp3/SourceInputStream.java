@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.client.okhttp3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import okio.BufferedSource;
+import okio.Sink;
+
+/**
+ * An {@link InputStream} reading a response body, that can read ahead from the network and hand its
+ * content directly to an Okio {@link Sink}.
+ *
+ * @see ResponseBodyTransfer
+ */
+class SourceInputStream extends InputStream {
+  private final BufferedSource source;
+  private final long readAheadSize;
+
+  SourceInputStream(BufferedSource source, long readAheadSize) {
+    this.source = source;
+    this.readAheadSize = readAheadSize;
+  }
+
+  @Override
+  public int read() throws IOException {
+    // A single byte is requested, don't wait for more.
+    source.request(1);
+    if (source.buffer().size() == 0) {
+      return -1;
+    }
+    return source.buffer().readByte() & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    // Block until enough bytes are buffered (or the end of the body is reached) rather than
+    // returning as soon as anything has been received.
+    source.request(Math.max(1, Math.min(len, readAheadSize)));
+    // Check the size rather than relying on Buffer.read returning -1: Okio.source(InputStream), used
+    // e.g. for cached responses, can leave an empty segment in the buffer at the end of the stream,
+    // in which case Buffer.read returns 0.
+    if (source.buffer().size() == 0) {
+      return -1;
+    }
+    return source.buffer().read(b, off, len);
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long skipped = 0;
+    while (skipped < n && source.request(1)) {
+      long toSkip = Math.min(n - skipped, source.buffer().size());
+      source.skip(toSkip);
+      skipped += toSkip;
+    }
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return (int) Math.min(source.buffer().size(), Integer.MAX_VALUE);
+  }
+
+  @Override
+  public void close() throws IOException {
+    source.close();
+  }
+
+  /** Moves the rest of the body to the given sink, without copying it, and returns its size. */
+  long transferTo(Sink sink) throws IOException {
+    return source.readAll(sink);
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.client.okhttp3;
+
+import java.io.IOException;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Pipe;
+
+/**
+ * A {@link RequestBody} whose content is written by another thread while the request is being sent.
+ *
+ * <p>The body can only be written once: it cannot be replayed by OkHttp (retries, redirects) nor
+ * read ahead by interceptors.
+ */
+class StreamingRequestBody extends RequestBody {
+  private static final long PIPE_BUFFER_SIZE = 64 * 1024;
+
+  private final MediaType contentType;
+  private final Pipe pipe = new Pipe(PIPE_BUFFER_SIZE);
+
+  private boolean consumed;
+  private volatile boolean failed;
+
+  StreamingRequestBody(MediaType contentType) {
+    this.contentType = contentType;
+  }
+
+  /** Returns the sink the request body must be written to. Closing the sink ends the body. */
+  BufferedSink sink() {
+    return Okio.buffer(pipe.sink());
+  }
+
+  /** Makes any subsequent or pending write to the {@link #sink()} fail. */
+  void abort() {
+    try {
+      pipe.source().close();
+    } catch (IOException e) {
+      // Closing a pipe's source never actually throws.
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * Ends the body in error: once it has read what was written to the {@link #sink()}, OkHttp fails
+   * rather than sending a truncated body.
+   */
+  void fail() {
+    failed = true;
+    try {
+      pipe.sink().close();
+    } catch (IOException e) {
+      // The pipe's source has already been closed, the call is done.
+    }
+  }
+
+  @Override
+  public long contentLength() {
+    return -1;
+  }
+
+  @Override
+  public MediaType contentType() {
+    return contentType;
+  }
+
+  @Override
+  public void writeTo(BufferedSink sink) throws IOException {
+    synchronized (this) {
+      if (consumed) {
+        throw new IOException("Streaming request body cannot be replayed");
+      }
+      consumed = true;
+    }
+    sink.writeAll(pipe.source());
+    if (failed) {
+      throw new IOException("Streaming request body could not be written");
+    }
+  }
+}
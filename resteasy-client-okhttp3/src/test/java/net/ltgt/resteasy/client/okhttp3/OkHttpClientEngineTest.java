@@ -17,28 +17,63 @@ package net.ltgt.resteasy.client.okhttp3;
 
 import static org.assertj.core.api.Assertions.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.ws.rs.ProcessingException;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.InvocationCallback;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Variant;
 import javax.ws.rs.ext.WriterInterceptor;
 import javax.ws.rs.ext.WriterInterceptorContext;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.logging.HttpLoggingInterceptor;
 import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.ForwardingSink;
+import okio.GzipSource;
+import okio.Okio;
+import okio.Sink;
 import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.rules.Timeout;
 
 public class OkHttpClientEngineTest {
@@ -48,12 +83,21 @@ public class OkHttpClientEngineTest {
   static final String HEADER_NAME = "X-Whatever";
   static final String INJECTED_HEADER_NAME = "X-Injected";
   static final String HEADER_VALUE = "some header";
+  static final String ETAG = "\"v1\"";
+  // Requests are only hedged after that many requests, so warmup requests are never hedged.
+  private static final int HEDGING_WARMUP_REQUESTS = CallPolicy.MIN_LATENCY_SAMPLES;
+  private static final long HEDGING_WARMUP_LATENCY_MILLIS = 50;
+  // More than the dispatcher's default maxRequestsPerHost
+  private static final int CONCURRENT_UPLOADS = 8;
+  private static final long TRICKLE_PERIOD_MILLIS = 1000;
 
   // In case an error is thrown in the MockWebServer, so clients don't block infinitely.
   @Rule public Timeout timeout = Timeout.seconds(10);
 
   @Rule public MockWebServer mockServer = new MockWebServer();
 
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Before
   public void configureServer() {
     mockServer.setDispatcher(
@@ -68,6 +112,56 @@ public class OkHttpClientEngineTest {
                     .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN)
                     .setHeader(HEADER_NAME, HEADER_VALUE)
                     .setBody("Not found");
+              case "/cached":
+                return new MockResponse()
+                    .setHeader(HttpHeaders.CACHE_CONTROL, "max-age=60")
+                    .setBody("cached");
+              case "/revalidated":
+                if (ETAG.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+                  return new MockResponse()
+                      .setResponseCode(Response.Status.NOT_MODIFIED.getStatusCode())
+                      .setHeader(HttpHeaders.ETAG, ETAG);
+                }
+                return new MockResponse()
+                    .setHeader(HttpHeaders.CACHE_CONTROL, "no-cache")
+                    .setHeader(HttpHeaders.ETAG, ETAG)
+                    .setBody("revalidated");
+              case "/compressed":
+                assertThat(request.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+                try (GzipSource body = new GzipSource(request.getBody())) {
+                  assertThat(Okio.buffer(body).readByteArray()).isEqualTo(PAYLOAD);
+                } catch (IOException e) {
+                  throw new AssertionError(e);
+                }
+                return new MockResponse().setBody("OK");
+              case "/flaky":
+                if (flakyRequests.getAndIncrement() == 0) {
+                  return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+                }
+                return new MockResponse().setBody("OK");
+              case "/trickle":
+                return new MockResponse()
+                    .setBody("OK")
+                    .throttleBody(1, TRICKLE_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+              case "/stalled":
+                return new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE);
+              case "/hedged":
+                hedgedRequests.add(System.nanoTime());
+                if (hedgedRequests.size() <= HEDGING_WARMUP_REQUESTS) {
+                  TimeUnit.MILLISECONDS.sleep(HEDGING_WARMUP_LATENCY_MILLIS);
+                  return new MockResponse().setBody("OK");
+                }
+                if (hedgedRequests.size() == HEDGING_WARMUP_REQUESTS + 1) {
+                  return new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE);
+                }
+                return new MockResponse().setBody("hedged");
+              case "/multiValuedHeaders":
+                assertThat(request.getHeaders().values(HEADER_NAME))
+                    .containsExactly(HEADER_VALUE, "other value");
+                return new MockResponse()
+                    .addHeader(HEADER_NAME, HEADER_VALUE)
+                    .addHeader(HEADER_NAME.toLowerCase(Locale.ROOT), "other value")
+                    .setBody("OK");
               case "/writerInterceptor":
                 assertThat(request.getBody().readByteArray()).isEqualTo(PAYLOAD);
                 // fall-through
@@ -76,13 +170,30 @@ public class OkHttpClientEngineTest {
                 return new MockResponse()
                     .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN)
                     .setBody(request.getHeader(HEADER_NAME));
+              case "/streaming":
+                assertThat(request.getHeader(HEADER_NAME)).isEqualTo(HEADER_VALUE);
+                assertThat(request.getBody().readByteArray()).isEqualTo(PAYLOAD);
+                return new MockResponse()
+                    .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN)
+                    .setBody(request.getChunkSizes().isEmpty() ? "buffered" : "chunked");
+              case "/concurrentStreaming":
+                assertThat(request.getBody().readByteArray()).isEqualTo(PAYLOAD);
+                // Only respond once all uploads are in flight.
+                concurrentUploads.countDown();
+                assertThat(concurrentUploads.await(5, TimeUnit.SECONDS)).isTrue();
+                return new MockResponse().setBody("OK");
             }
             throw new AssertionError("Unexpected request: " + request);
           }
         });
   }
 
+  private final AtomicInteger flakyRequests = new AtomicInteger();
+  private final List<Long> hedgedRequests = new CopyOnWriteArrayList<>();
+  private final CountDownLatch concurrentUploads = new CountDownLatch(CONCURRENT_UPLOADS);
+
   private OkHttpClient okHttpClient;
+  private OkHttpClientEngine engine;
   private Client client;
 
   @Before
@@ -115,7 +226,8 @@ public class OkHttpClientEngineTest {
                         })
                     .setLevel(HttpLoggingInterceptor.Level.BODY))
             .build();
-    client = new ResteasyClientBuilder().httpEngine(new OkHttpClientEngine(okHttpClient)).build();
+    engine = new OkHttpClientEngine(okHttpClient);
+    client = new ResteasyClientBuilder().httpEngine(engine).build();
   }
 
   @After
@@ -147,6 +259,276 @@ public class OkHttpClientEngineTest {
     assertThat(response.readEntity(String.class)).isEqualTo(HEADER_VALUE);
   }
 
+  @Test
+  public void multiValuedHeaders() {
+    Response response =
+        client
+            .target(mockServer.url("/multiValuedHeaders").uri())
+            .register(
+                new ClientResponseFilter() {
+                  @Override
+                  public void filter(
+                      ClientRequestContext requestContext, ClientResponseContext responseContext)
+                      throws IOException {
+                    assertThat(responseContext.getHeaders().getFirst(HEADER_NAME))
+                        .isEqualTo(HEADER_VALUE);
+                    responseContext.getHeaders().add(INJECTED_HEADER_NAME, HEADER_VALUE);
+                    // Lists of values must not be detached copies
+                    responseContext
+                        .getHeaders()
+                        .get(HEADER_NAME.toLowerCase(Locale.ROOT))
+                        .add("third value");
+                  }
+                })
+            .request()
+            .header(HEADER_NAME, HEADER_VALUE)
+            .header(HEADER_NAME, "other value")
+            .get();
+
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    assertThat(response.getStringHeaders().get(HEADER_NAME))
+        .containsExactly(HEADER_VALUE, "other value", "third value");
+    assertThat(response.getHeaderString(INJECTED_HEADER_NAME)).isEqualTo(HEADER_VALUE);
+
+    response.getHeaders().get(HEADER_NAME.toUpperCase(Locale.ROOT)).add("fourth value");
+    assertThat(response.getStringHeaders().get(HEADER_NAME))
+        .containsExactly(HEADER_VALUE, "other value", "third value", "fourth value");
+    response.close();
+  }
+
+  @Test
+  public void callMetrics() {
+    final List<CallMetrics> metrics = new CopyOnWriteArrayList<>();
+    CallMetricsListener listener =
+        new CallMetricsListener() {
+          @Override
+          public void callEnded(CallMetrics callMetrics) {
+            metrics.add(callMetrics);
+          }
+        };
+    engine.setCallMetricsListener(listener);
+
+    for (int i = 0; i < 3; i++) {
+      if (i == 2) {
+        // rebuilds the instrumented client, which must still detect connection reuse
+        engine.setCallMetricsListener(listener);
+      }
+      Response response = client.target(mockServer.url("/simple").uri()).request().get();
+      assertThat(response.readEntity(String.class)).isEqualTo("Not found");
+    }
+
+    assertThat(metrics).hasSize(3);
+    for (CallMetrics callMetrics : metrics) {
+      assertThat(callMetrics.getMethod()).isEqualTo("GET");
+      assertThat(callMetrics.getUri()).isEqualTo(mockServer.url("/simple").uri());
+      assertThat(callMetrics.getStatus()).isEqualTo(Response.Status.NOT_FOUND.getStatusCode());
+      assertThat(callMetrics.getFailure()).isNull();
+      assertThat(callMetrics.getNetworkRequestCount()).isEqualTo(1);
+      assertThat(callMetrics.getConnectNanos()).isNotNegative();
+      assertThat(callMetrics.getResponseHeadersNanos()).isNotNegative();
+      assertThat(callMetrics.getResponseBodyNanos()).isNotNegative();
+      assertThat(callMetrics.getTotalNanos())
+          .isGreaterThanOrEqualTo(
+              callMetrics.getConnectNanos() + callMetrics.getResponseHeadersNanos());
+    }
+    assertThat(metrics.get(0).isConnectionReused()).isFalse();
+    assertThat(metrics.get(1).isConnectionReused()).isTrue();
+    assertThat(metrics.get(2).isConnectionReused()).isTrue();
+  }
+
+  @Test
+  public void connectionPool() {
+    engine.setConnectionPool(5, 1, TimeUnit.MINUTES);
+
+    Response response = client.target(mockServer.url("/simple").uri()).request().get();
+    assertThat(response.readEntity(String.class)).isEqualTo("Not found");
+
+    ConnectionPoolStats stats = engine.getConnectionPoolStats();
+    assertThat(stats.getConnectionCount()).isEqualTo(1);
+    assertThat(stats.getIdleConnectionCount()).isEqualTo(1);
+    assertThat(stats.getActiveConnectionCount()).isEqualTo(0);
+    assertThat(stats.getRunningCallCount()).isEqualTo(0);
+
+    engine.close();
+    assertThat(engine.getConnectionPoolStats().getConnectionCount()).isEqualTo(0);
+    // The engine doesn't own the client
+    assertThat(okHttpClient.dispatcher().executorService().isShutdown()).isFalse();
+  }
+
+  @Test
+  public void fileEntity() throws Exception {
+    engine.setResponseReadAheadSize(64 * 1024);
+
+    File file =
+        client
+            .target(mockServer.url("/simple").uri())
+            .register(new FileEntityReader())
+            .request()
+            .get()
+            .readEntity(File.class);
+    try {
+      assertThat(file).hasContent("Not found");
+    } finally {
+      assertThat(file.delete()).isTrue();
+    }
+  }
+
+  @Test
+  public void transferResponseBody() throws Exception {
+    InputStream in =
+        client
+            .target(mockServer.url("/simple").uri())
+            .request()
+            .get()
+            .readEntity(InputStream.class);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      assertThat(ResponseBodyTransfer.transferTo(in, out)).isEqualTo(9);
+    } finally {
+      in.close();
+    }
+    assertThat(out.toString("UTF-8")).isEqualTo("Not found");
+  }
+
+  @Test
+  public void singleByteReadsWithReadAhead() throws Exception {
+    // The HttpLoggingInterceptor would read the whole response body.
+    OkHttpClient.Builder builder = okHttpClient.newBuilder();
+    builder.networkInterceptors().clear();
+    OkHttpClientEngine engine = new OkHttpClientEngine(builder.build());
+    engine.setResponseReadAheadSize(64 * 1024);
+    Client readAheadClient = new ResteasyClientBuilder().httpEngine(engine).build();
+
+    InputStream in =
+        readAheadClient
+            .target(mockServer.url("/trickle").uri())
+            .request()
+            .get()
+            .readEntity(InputStream.class);
+    try {
+      long start = System.nanoTime();
+      assertThat(in.read()).isEqualTo('O');
+      // Doesn't wait for the rest of the body to trickle in.
+      assertThat(System.nanoTime() - start)
+          .isLessThan(TimeUnit.MILLISECONDS.toNanos(TRICKLE_PERIOD_MILLIS / 2));
+    } finally {
+      in.close();
+      readAheadClient.close();
+    }
+  }
+
+  @Test
+  public void protocol() {
+    engine.setProtocols(Collections.singletonList(Protocol.HTTP_1_1));
+    assertThat(engine.getProtocols()).containsExactly(Protocol.HTTP_1_1);
+
+    Response response = client.target(mockServer.url("/simple").uri()).request().get();
+    try {
+      assertThat(OkHttpClientEngine.getProtocol(response)).isEqualTo(Protocol.HTTP_1_1);
+    } finally {
+      response.close();
+    }
+  }
+
+  @Test
+  public void cache() throws Exception {
+    assertThat(engine.getCacheStats()).isNull();
+    engine.setCache(temporaryFolder.newFolder(), 1024 * 1024);
+
+    for (String path : new String[] {"cached", "revalidated"}) {
+      for (int i = 0; i < 2; i++) {
+        Response response = client.target(mockServer.url(path).uri()).request().get();
+        assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+        assertThat(response.readEntity(String.class)).isEqualTo(path);
+      }
+    }
+
+    CacheStats stats = engine.getCacheStats();
+    assertThat(stats.getHitCount()).isEqualTo(1);
+    assertThat(stats.getRevalidatedHitCount()).isEqualTo(1);
+    assertThat(stats.getMissCount()).isEqualTo(2);
+    assertThat(mockServer.getRequestCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void requestCompression() {
+    engine.setRequestCompression(ContentEncoder.GZIP, PAYLOAD.length);
+
+    Response response =
+        client
+            .target(mockServer.url("/compressed").uri())
+            .request()
+            .post(Entity.entity(PAYLOAD, MediaType.APPLICATION_OCTET_STREAM_TYPE));
+
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    assertThat(response.readEntity(String.class)).isEqualTo("OK");
+    CompressionStats stats = engine.getCompressionStats();
+    // The body might be written several times, e.g. by the HttpLoggingInterceptor.
+    assertThat(stats.getBodyCount()).isPositive();
+    assertThat(stats.getUncompressedBytes()).isEqualTo(stats.getBodyCount() * PAYLOAD.length);
+    assertThat(stats.getCompressedBytes()).isPositive();
+  }
+
+  @Test
+  public void requestCompressionFailure() throws Exception {
+    final CountDownLatch encoderClosed = new CountDownLatch(1);
+    OkHttpClient.Builder builder = okHttpClient.newBuilder();
+    builder.networkInterceptors().clear();
+    OkHttpClientEngine engine = new OkHttpClientEngine(builder.build());
+    engine.setStreamingThreshold(0);
+    engine.setRequestCompression(
+        new ContentEncoder() {
+          @Override
+          public String getEncoding() {
+            return "gzip";
+          }
+
+          @Override
+          public Sink encode(Sink sink) {
+            return new ForwardingSink(ContentEncoder.GZIP.encode(sink)) {
+              @Override
+              public void close() throws IOException {
+                encoderClosed.countDown();
+                super.close();
+              }
+            };
+          }
+        },
+        0);
+    Client streamingClient = new ResteasyClientBuilder().httpEngine(engine).build();
+    try {
+      streamingClient
+          .target(mockServer.url("/streaming").uri())
+          .register(
+              new WriterInterceptor() {
+                @Override
+                public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+                  context.getOutputStream().write(PAYLOAD);
+                  context.getOutputStream().flush();
+                  // Let OkHttp start encoding the body.
+                  try {
+                    Thread.sleep(200);
+                  } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                  }
+                  throw new IOException("Failed writing body");
+                }
+              })
+          .request()
+          .post(
+              Entity.entity(
+                  new ByteArrayInputStream(PAYLOAD), MediaType.APPLICATION_OCTET_STREAM_TYPE));
+      fail("Expected ProcessingException");
+    } catch (ProcessingException e) {
+      // expected
+    } finally {
+      streamingClient.close();
+    }
+
+    assertThat(encoderClosed.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(engine.getCompressionStats().getBodyCount()).isZero();
+  }
+
   @Test
   public void simpleWriterInterceptors() {
     Response response =
@@ -167,4 +549,341 @@ public class OkHttpClientEngineTest {
     assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
     assertThat(response.readEntity(String.class)).isEqualTo(HEADER_VALUE);
   }
+
+  @Test
+  public void asyncRequest() throws Exception {
+    Future<Response> future =
+        engine.submit(
+            client
+                .target(mockServer.url("/requestHeader").uri())
+                .register(
+                    new ClientRequestFilter() {
+                      @Override
+                      public void filter(ClientRequestContext requestContext) throws IOException {
+                        requestContext.getHeaders().putSingle(HEADER_NAME, HEADER_VALUE);
+                      }
+                    })
+                .request()
+                .buildGet());
+
+    Response response = future.get();
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    assertThat(response.readEntity(String.class)).isEqualTo(HEADER_VALUE);
+  }
+
+  @Test
+  public void asyncRequestFilterFailure() throws Exception {
+    Future<Response> future =
+        engine.submit(
+            client
+                .target(mockServer.url("/simple").uri())
+                .register(
+                    new ClientRequestFilter() {
+                      @Override
+                      public void filter(ClientRequestContext requestContext) throws IOException {
+                        throw new WebApplicationException("Failed filtering request");
+                      }
+                    })
+                .request()
+                .buildGet());
+
+    try {
+      future.get();
+      fail("Expected ExecutionException");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause())
+          .isExactlyInstanceOf(ProcessingException.class)
+          .hasCauseExactlyInstanceOf(WebApplicationException.class);
+    }
+    assertThat(mockServer.getRequestCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void asyncRequestWithCallback() throws Exception {
+    final AtomicReference<Response> completed = new AtomicReference<>();
+    Future<Response> future =
+        engine.submit(
+            client.target(mockServer.url("/simple").uri()).request().buildGet(),
+            new InvocationCallback<Response>() {
+              @Override
+              public void completed(Response response) {
+                completed.set(response);
+              }
+
+              @Override
+              public void failed(Throwable throwable) {
+                throw new AssertionError(throwable);
+              }
+            });
+
+    Response response = future.get();
+    assertThat(completed.get()).isSameAs(response);
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.NOT_FOUND);
+    assertThat(response.readEntity(String.class)).isEqualTo("Not found");
+  }
+
+  @Test
+  public void streamingRequestBody() {
+    Client streamingClient = createStreamingClient(PAYLOAD.length / 2);
+    try {
+      Response response =
+          streamingClient
+              .target(mockServer.url("/streaming").uri())
+              .request()
+              .header(HEADER_NAME, HEADER_VALUE)
+              .post(
+                  Entity.entity(
+                      // byte[] entities would be sent directly, without streaming
+                      new ByteArrayInputStream(PAYLOAD), MediaType.APPLICATION_OCTET_STREAM_TYPE));
+
+      assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+      assertThat(response.readEntity(String.class)).isEqualTo("chunked");
+    } finally {
+      streamingClient.close();
+    }
+  }
+
+  @Test
+  public void streamingRequestBodyFailure() throws Exception {
+    OkHttpClient.Builder builder = okHttpClient.newBuilder();
+    builder.networkInterceptors().clear();
+    OkHttpClient okHttpClient = builder.build();
+    OkHttpClientEngine engine = new OkHttpClientEngine(okHttpClient);
+    engine.setStreamingThreshold(0);
+    Client streamingClient = new ResteasyClientBuilder().httpEngine(engine).build();
+    try {
+      streamingClient
+          .target(mockServer.url("/streaming").uri())
+          .register(
+              new WriterInterceptor() {
+                @Override
+                public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+                  context.getOutputStream().write(PAYLOAD);
+                  context.getOutputStream().flush();
+                  // Let OkHttp send what has been written and wait for more.
+                  try {
+                    Thread.sleep(200);
+                  } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                  }
+                  throw new IOException("Failed writing body");
+                }
+              })
+          .request()
+          .post(
+              Entity.entity(
+                  new ByteArrayInputStream(PAYLOAD), MediaType.APPLICATION_OCTET_STREAM_TYPE));
+      fail("Expected ProcessingException");
+    } catch (ProcessingException e) {
+      assertThat(e).hasRootCauseExactlyInstanceOf(IOException.class);
+    } finally {
+      streamingClient.close();
+    }
+
+    // The call must not be left waiting for the rest of the body.
+    for (int i = 0; okHttpClient.dispatcher().runningCallsCount() > 0; i++) {
+      assertThat(i).isLessThan(50);
+      Thread.sleep(100);
+    }
+  }
+
+  @Test
+  public void concurrentStreamingRequestBodies() throws Exception {
+    final Client streamingClient = createStreamingClient(0);
+    ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_UPLOADS);
+    try {
+      List<Future<String>> responses = new ArrayList<>();
+      for (int i = 0; i < CONCURRENT_UPLOADS; i++) {
+        responses.add(
+            executor.submit(
+                new Callable<String>() {
+                  @Override
+                  public String call() {
+                    return streamingClient
+                        .target(mockServer.url("/concurrentStreaming").uri())
+                        .request()
+                        .post(
+                            Entity.entity(
+                                new ByteArrayInputStream(PAYLOAD),
+                                MediaType.APPLICATION_OCTET_STREAM_TYPE))
+                        .readEntity(String.class);
+                  }
+                }));
+      }
+      for (Future<String> response : responses) {
+        assertThat(response.get()).isEqualTo("OK");
+      }
+    } finally {
+      executor.shutdownNow();
+      streamingClient.close();
+    }
+  }
+
+  @Test
+  public void bufferedBelowStreamingThreshold() {
+    Client streamingClient = createStreamingClient(PAYLOAD.length);
+    try {
+      Response response =
+          streamingClient
+              .target(mockServer.url("/streaming").uri())
+              .register(
+                  new WriterInterceptor() {
+                    @Override
+                    public void aroundWriteTo(WriterInterceptorContext context)
+                        throws IOException, WebApplicationException {
+                      context.proceed();
+                      // Only works because the body is buffered
+                      context.getHeaders().putSingle(HEADER_NAME, HEADER_VALUE);
+                    }
+                  })
+              .request()
+              .post(Entity.entity(PAYLOAD, MediaType.APPLICATION_OCTET_STREAM_TYPE));
+
+      assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+      assertThat(response.readEntity(String.class)).isEqualTo("buffered");
+    } finally {
+      streamingClient.close();
+    }
+  }
+
+  @Test
+  public void directRequestBodies() throws Exception {
+    File file = File.createTempFile("okhttp", ".tmp");
+    Client streamingClient = createStreamingClient(0);
+    try {
+      Files.write(file.toPath(), PAYLOAD);
+      for (Object entity :
+          new Object[] {
+            PAYLOAD, file, file.toPath(), ByteBuffer.wrap(PAYLOAD).asReadOnlyBuffer()
+          }) {
+        Response response =
+            streamingClient
+                .target(mockServer.url("/streaming").uri())
+                .request()
+                .header(HEADER_NAME, HEADER_VALUE)
+                .post(Entity.entity(entity, MediaType.APPLICATION_OCTET_STREAM_TYPE));
+
+        assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+        // Not streamed despite the streaming threshold
+        assertThat(response.readEntity(String.class)).isEqualTo("buffered");
+      }
+    } finally {
+      streamingClient.close();
+      assertThat(file.delete()).isTrue();
+    }
+  }
+
+  @Test
+  public void directRequestBodiesWithContentEncoding() {
+    // Resteasy's built-in GZIPEncodingInterceptor must still compress the entity
+    Response response =
+        client
+            .target(mockServer.url("/compressed").uri())
+            .request()
+            .post(
+                Entity.entity(
+                    PAYLOAD,
+                    new Variant(MediaType.APPLICATION_OCTET_STREAM_TYPE, (String) null, "gzip")));
+
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    assertThat(response.readEntity(String.class)).isEqualTo("OK");
+  }
+
+  @Test
+  public void retries() {
+    // Disable OkHttp's own retries
+    OkHttpClientEngine engine =
+        new OkHttpClientEngine(okHttpClient.newBuilder().retryOnConnectionFailure(false).build());
+    engine.setCallPolicy(new CallPolicy().setMaxRetries(1).setBackoff(1, 1, TimeUnit.MILLISECONDS));
+    Client retryingClient = new ResteasyClientBuilder().httpEngine(engine).build();
+    try {
+      Response response = retryingClient.target(mockServer.url("/flaky").uri()).request().get();
+
+      assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+      assertThat(response.readEntity(String.class)).isEqualTo("OK");
+      assertThat(flakyRequests.get()).isEqualTo(2);
+    } finally {
+      retryingClient.close();
+    }
+  }
+
+  @Test
+  public void retriesBelowStreamingThreshold() {
+    // Disable OkHttp's own retries
+    OkHttpClientEngine engine =
+        new OkHttpClientEngine(okHttpClient.newBuilder().retryOnConnectionFailure(false).build());
+    engine.setStreamingThreshold(PAYLOAD.length);
+    engine.setCallPolicy(new CallPolicy().setMaxRetries(1).setBackoff(1, 1, TimeUnit.MILLISECONDS));
+    Client retryingClient = new ResteasyClientBuilder().httpEngine(engine).build();
+    try {
+      Response response =
+          retryingClient
+              .target(mockServer.url("/flaky").uri())
+              .request()
+              .put(
+                  Entity.entity(
+                      new ByteArrayInputStream(PAYLOAD), MediaType.APPLICATION_OCTET_STREAM_TYPE));
+
+      assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+      assertThat(response.readEntity(String.class)).isEqualTo("OK");
+      assertThat(flakyRequests.get()).isEqualTo(2);
+    } finally {
+      retryingClient.close();
+    }
+  }
+
+  @Test
+  public void hedging() throws Exception {
+    OkHttpClientEngine engine = new OkHttpClientEngine(okHttpClient);
+    engine.setCallPolicy(new CallPolicy().setHedgingPercentile(0.5));
+    Client hedgingClient = new ResteasyClientBuilder().httpEngine(engine).build();
+    try {
+      for (int i = 0; i < HEDGING_WARMUP_REQUESTS; i++) {
+        Response response = hedgingClient.target(mockServer.url("/hedged").uri()).request().get();
+        assertThat(response.readEntity(String.class)).isEqualTo("OK");
+      }
+
+      // The first request stalls, the hedged one gets the response.
+      Response response = hedgingClient.target(mockServer.url("/hedged").uri()).request().get();
+      assertThat(response.readEntity(String.class)).isEqualTo("hedged");
+
+      assertThat(hedgedRequests).hasSize(HEDGING_WARMUP_REQUESTS + 2);
+      long hedgingDelay =
+          hedgedRequests.get(HEDGING_WARMUP_REQUESTS + 1)
+              - hedgedRequests.get(HEDGING_WARMUP_REQUESTS);
+      assertThat(hedgingDelay)
+          .isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(HEDGING_WARMUP_LATENCY_MILLIS));
+      // The stalled request has been cancelled, rather than waiting for the read timeout.
+      for (int i = 0; okHttpClient.dispatcher().runningCallsCount() > 0; i++) {
+        assertThat(i).isLessThan(20);
+        Thread.sleep(100);
+      }
+    } finally {
+      hedgingClient.close();
+    }
+  }
+
+  @Test
+  public void deadline() {
+    engine.setCallPolicy(new CallPolicy().setDeadline(5, TimeUnit.SECONDS));
+    try {
+      client
+          .target(mockServer.url("/stalled").uri())
+          .request()
+          .property(CallPolicy.DEADLINE_PROPERTY, 100)
+          .get();
+      fail("Expected ProcessingException");
+    } catch (ProcessingException e) {
+      assertThat(e).hasCauseInstanceOf(InterruptedIOException.class);
+    }
+  }
+
+  private Client createStreamingClient(long streamingThreshold) {
+    // Streaming request bodies cannot be replayed, so remove the HttpLoggingInterceptor
+    OkHttpClient.Builder builder = okHttpClient.newBuilder();
+    builder.networkInterceptors().clear();
+    OkHttpClientEngine engine = new OkHttpClientEngine(builder.build());
+    engine.setStreamingThreshold(streamingThreshold);
+    return new ResteasyClientBuilder().httpEngine(engine).build();
+  }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.testing;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How much time an {@link InProcessResteasy} spent starting its deployment, resetting it between
+ * tests, and running tests.
+ *
+ * @see InProcessResteasy#getTimings()
+ */
+public final class DeploymentTimings {
+  private final long startupNanos;
+  private final long resetNanos;
+  private final int resetCount;
+  private final long testNanos;
+  private final int testCount;
+
+  DeploymentTimings(
+      long startupNanos, long resetNanos, int resetCount, long testNanos, int testCount) {
+    this.startupNanos = startupNanos;
+    this.resetNanos = resetNanos;
+    this.resetCount = resetCount;
+    this.testNanos = testNanos;
+    this.testCount = testCount;
+  }
+
+  /** Returns the time spent starting the deployment and creating the client. */
+  public long getStartupTime(TimeUnit unit) {
+    return unit.convert(startupNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /** Returns the total time spent resetting the deployment between tests. */
+  public long getResetTime(TimeUnit unit) {
+    return unit.convert(resetNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /** Returns the number of times the deployment has been reset. */
+  public int getResetCount() {
+    return resetCount;
+  }
+
+  /** Returns the total time spent running tests, excluding the time spent resetting. */
+  public long getTestTime(TimeUnit unit) {
+    return unit.convert(testNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /** Returns the number of tests that have been run. */
+  public int getTestCount() {
+    return testCount;
+  }
+
+  @Override
+  public String toString() {
+    return "DeploymentTimings{startup="
+        + TimeUnit.NANOSECONDS.toMillis(startupNanos)
+        + "ms, resets="
+        + resetCount
+        + " in "
+        + TimeUnit.NANOSECONDS.toMillis(resetNanos)
+        + "ms, tests="
+        + testCount
+        + " in "
+        + TimeUnit.NANOSECONDS.toMillis(testNanos)
+        + "ms}";
+  }
+}
@@ -15,15 +15,17 @@
  */
 package net.ltgt.resteasy.testing;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
+import javax.ws.rs.ProcessingException;
 import javax.ws.rs.core.Cookie;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MultivaluedMap;
@@ -34,29 +36,120 @@ import org.jboss.resteasy.client.jaxrs.internal.ClientResponse;
 import org.jboss.resteasy.core.Dispatcher;
 import org.jboss.resteasy.mock.MockHttpRequest;
 import org.jboss.resteasy.mock.MockHttpResponse;
+import org.jboss.resteasy.spi.ResteasyDeployment;
 import org.jboss.resteasy.util.CaseInsensitiveMap;
 import org.jboss.resteasy.util.CookieParser;
 
 public class InProcessClientHttpEngine implements ClientHttpEngine {
   private final Dispatcher dispatcher;
+  private final ResteasyDeployment deployment;
   private final URI baseUri;
 
   private SSLContext sslContext;
   private HostnameVerifier hostnameVerifier;
 
+  private Executor dispatchExecutor;
+  private int pipeSize;
+
   public InProcessClientHttpEngine(Dispatcher dispatcher, URI baseUri) {
     this.dispatcher = dispatcher;
+    this.deployment = null;
     this.baseUri = baseUri;
   }
 
+  /**
+   * Creates an engine that dispatches to the {@linkplain ResteasyDeployment#getDispatcher() current
+   * dispatcher} of the deployment, so it keeps working when the deployment is restarted.
+   */
+  public InProcessClientHttpEngine(ResteasyDeployment deployment, URI baseUri) {
+    this.dispatcher = null;
+    this.deployment = deployment;
+    this.baseUri = baseUri;
+  }
+
+  /**
+   * Dispatches requests on threads of the given executor, and streams responses through a pipe of
+   * the given size, rather than dispatching them on the calling thread and buffering responses.
+   *
+   * <p>Responses are returned as soon as the server starts writing them (or completes), and the
+   * server blocks whenever the pipe is full, until the client reads from the response. This allows
+   * testing streaming and infinite responses; closing the response makes the server fail writing to
+   * it. The executor must be able to run as many requests concurrently as there are responses being
+   * read.
+   *
+   * @param dispatchExecutor the executor to dispatch requests on, or {@code null} to dispatch them
+   *     on the calling thread.
+   */
+  public void setStreamingDispatch(Executor dispatchExecutor, int pipeSize) {
+    if (dispatchExecutor != null && pipeSize <= 0) {
+      throw new IllegalArgumentException("pipeSize must be positive");
+    }
+    this.dispatchExecutor = dispatchExecutor;
+    this.pipeSize = pipeSize;
+  }
+
   @Override
   public ClientResponse invoke(ClientInvocation request) {
+    Dispatcher dispatcher = getDispatcher();
     MockHttpRequest mockRequest = createRequest(request);
 
-    MockHttpResponse mockResponse = new MockHttpResponse();
+    if (dispatchExecutor != null) {
+      return invokeStreaming(request, dispatcher, mockRequest);
+    }
+
+    InProcessHttpResponse mockResponse = new InProcessHttpResponse();
     dispatcher.invoke(mockRequest, mockResponse);
 
-    return createResponse(request, mockResponse);
+    return createResponse(
+        request, dispatcher, mockResponse, mockResponse.getBuffer().newInputStream());
+  }
+
+  private ClientResponse invokeStreaming(
+      ClientInvocation request, final Dispatcher dispatcher, final MockHttpRequest mockRequest) {
+    final StreamingHttpResponse mockResponse = new StreamingHttpResponse(pipeSize);
+    try {
+      dispatchExecutor.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              Throwable failure = null;
+              try {
+                dispatcher.invoke(mockRequest, mockResponse);
+              } catch (Throwable t) {
+                failure = t;
+              } finally {
+                mockResponse.complete(failure);
+              }
+            }
+          });
+    } catch (RejectedExecutionException ree) {
+      throw new ProcessingException(ree);
+    }
+
+    try {
+      mockResponse.awaitCommitted();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      closeQuietly(mockResponse.getEntityStream());
+      throw new ProcessingException(ie);
+    }
+    if (mockResponse.getFailure() != null) {
+      throw new ProcessingException(mockResponse.getFailure());
+    }
+
+    return createResponse(request, dispatcher, mockResponse, mockResponse.getEntityStream());
+  }
+
+  private static void closeQuietly(InputStream stream) {
+    try {
+      stream.close();
+    } catch (IOException ioe) {
+      // ignore
+    }
+  }
+
+  private Dispatcher getDispatcher() {
+    return deployment == null ? dispatcher : deployment.getDispatcher();
   }
 
   private MockHttpRequest createRequest(ClientInvocation request) {
@@ -64,20 +157,22 @@ public class InProcessClientHttpEngine implements ClientHttpEngine {
         MockHttpRequest.create(request.getMethod(), request.getUri(), baseUri);
 
     if (request.getEntity() != null) {
-      ByteArrayOutputStream baos = new ByteArrayOutputStream();
-      request.getDelegatingOutputStream().setDelegate(baos);
+      SegmentedBuffer buffer = new SegmentedBuffer();
+      request.getDelegatingOutputStream().setDelegate(buffer);
       try {
         request.writeRequestBody(request.getEntityStream());
-        baos.close();
+        buffer.close();
       } catch (IOException ioe) {
         throw new RuntimeException(ioe);
       }
-      mockRequest.setInputStream(new ByteArrayInputStream(baos.toByteArray()));
+      mockRequest.setInputStream(buffer.newInputStream());
     }
 
     MultivaluedMap<String, String> requestHeaders = request.getHeaders().asMap();
     mockRequest.getMutableHeaders().putAll(requestHeaders);
     copyCookies(mockRequest, requestHeaders);
+    copyProperty(request, mockRequest, InProcessContextFilter.SECURITY_FILTER_PROPERTY);
+    copyProperty(request, mockRequest, InProcessContextFilter.CONTEXT_OBJECTS_PROPERTY);
 
     return mockRequest;
   }
@@ -96,17 +191,24 @@ public class InProcessClientHttpEngine implements ClientHttpEngine {
     }
   }
 
+  private void copyProperty(ClientInvocation request, MockHttpRequest mockRequest, String name) {
+    Object value = request.getClientConfiguration().getProperty(name);
+    if (value != null) {
+      mockRequest.setAttribute(name, value);
+    }
+  }
+
   private ClientResponse createResponse(
-      final ClientInvocation request, final MockHttpResponse mockResponse) {
+      ClientInvocation request,
+      Dispatcher dispatcher,
+      MockHttpResponse mockResponse,
+      final InputStream entityStream) {
     ClientResponse response =
         new ClientResponse(request.getClientConfiguration()) {
-          private InputStream inputStream;
+          private InputStream inputStream = entityStream;
 
           @Override
           protected InputStream getInputStream() {
-            if (inputStream == null) {
-              inputStream = new ByteArrayInputStream(mockResponse.getOutput());
-            }
             return inputStream;
           }
 
@@ -117,19 +219,22 @@ public class InProcessClientHttpEngine implements ClientHttpEngine {
 
           @Override
           public void releaseConnection() throws IOException {
-            // no-op
+            entityStream.close();
           }
         };
 
     response.setStatus(mockResponse.getStatus());
     response.setHeaders(
-        transformHeaders(mockResponse.getOutputHeaders(), mockResponse.getNewCookies()));
+        transformHeaders(
+            dispatcher, mockResponse.getOutputHeaders(), mockResponse.getNewCookies()));
 
     return response;
   }
 
   private MultivaluedMap<String, String> transformHeaders(
-      MultivaluedMap<String, Object> outputHeaders, List<NewCookie> newCookies) {
+      Dispatcher dispatcher,
+      MultivaluedMap<String, Object> outputHeaders,
+      List<NewCookie> newCookies) {
     MultivaluedMap<String, String> headers = new CaseInsensitiveMap<>();
     for (Map.Entry<String, List<Object>> header : outputHeaders.entrySet()) {
       for (Object value : header.getValue()) {
@@ -165,4 +270,36 @@ public class InProcessClientHttpEngine implements ClientHttpEngine {
   public void close() {
     // no-op
   }
+
+  /** A {@link MockHttpResponse} whose output can be read without copying it. */
+  private static class InProcessHttpResponse extends MockHttpResponse {
+    private final SegmentedBuffer buffer = new SegmentedBuffer();
+    private OutputStream outputStream = buffer;
+
+    SegmentedBuffer getBuffer() {
+      return buffer;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+      return outputStream;
+    }
+
+    @Override
+    public void setOutputStream(OutputStream outputStream) {
+      this.outputStream = outputStream;
+    }
+
+    @Override
+    public byte[] getOutput() {
+      return buffer.toByteArray();
+    }
+
+    @Override
+    public void reset() {
+      super.reset();
+      buffer.reset();
+      outputStream = buffer;
+    }
+  }
 }
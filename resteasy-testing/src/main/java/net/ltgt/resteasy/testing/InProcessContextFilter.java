@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.testing;
+
+import java.io.IOException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.PreMatching;
+
+/**
+ * Applies the {@link TestSecurityFilter} and {@link TestContextObjects} registered on the client
+ * that sent the request, which {@link InProcessClientHttpEngine} passes as request properties.
+ */
+@PreMatching
+class InProcessContextFilter implements ContainerRequestFilter {
+  static final String SECURITY_FILTER_PROPERTY = TestSecurityFilter.class.getName();
+  static final String CONTEXT_OBJECTS_PROPERTY = TestContextObjects.class.getName();
+
+  @Override
+  public void filter(ContainerRequestContext requestContext) throws IOException {
+    Object contextObjects = requestContext.getProperty(CONTEXT_OBJECTS_PROPERTY);
+    if (contextObjects instanceof TestContextObjects) {
+      ((TestContextObjects) contextObjects).push();
+    }
+    Object securityFilter = requestContext.getProperty(SECURITY_FILTER_PROPERTY);
+    if (securityFilter instanceof TestSecurityFilter) {
+      ((TestSecurityFilter) securityFilter).filter(requestContext);
+    }
+  }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.testing;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Response;
+
+/**
+ * Sends a mix of requests to an {@link InProcessResteasy} from several threads, and measures
+ * throughput, latencies and allocations.
+ *
+ * <p>Requests go through the Resteasy client and dispatcher, with all their providers and filters,
+ * but without any network; this measures the cost of the application and Resteasy alone.
+ *
+ * <p>Usage:
+ *
+ * <pre><code>
+ * InProcessLoadTest loadTest = new InProcessLoadTest(resteasy);
+ * loadTest.setThreads(4);
+ * loadTest.setWarmup(5, TimeUnit.SECONDS);
+ * loadTest.setDuration(30, TimeUnit.SECONDS);
+ * loadTest.addRequest(9, new LoadTestRequest() {
+ *   &#064;Override public Response send(Client client) {
+ *     return client.target(resteasy.getBaseUriBuilder().path(DummyResource.class))
+ *         .request().get();
+ *   }
+ * });
+ * loadTest.addRequest(1, ...);
+ * LoadTestResult result = loadTest.run();
+ * </code></pre>
+ *
+ * <p>Allocations are measured on the threads sending the requests, so they include those of the
+ * dispatcher, unless the engine is configured for {@linkplain
+ * InProcessClientHttpEngine#setStreamingDispatch streaming dispatch}.
+ */
+public class InProcessLoadTest {
+  private final InProcessResteasy resteasy;
+  private final List<LoadTestRequest> requests = new ArrayList<>();
+  private final List<Integer> weights = new ArrayList<>();
+  private int totalWeight;
+
+  private int threads = 1;
+  private double rate;
+  private long warmupNanos;
+  private long durationNanos = TimeUnit.SECONDS.toNanos(10);
+
+  public InProcessLoadTest(InProcessResteasy resteasy) {
+    this.resteasy = resteasy;
+  }
+
+  /** Adds a request to the mix, to be sent in proportion to its weight. */
+  public void addRequest(int weight, LoadTestRequest request) {
+    if (weight <= 0) {
+      throw new IllegalArgumentException("weight must be positive");
+    }
+    requests.add(request);
+    weights.add(weight);
+    totalWeight += weight;
+  }
+
+  /** Sets the number of threads sending requests; defaults to 1. */
+  public void setThreads(int threads) {
+    if (threads <= 0) {
+      throw new IllegalArgumentException("threads must be positive");
+    }
+    this.threads = threads;
+  }
+
+  /**
+   * Sets the number of requests to send per second, across all threads, or {@code 0} (the default)
+   * to send them as fast as possible.
+   *
+   * <p>At a fixed rate, latencies are measured from the time requests were scheduled to be sent, so
+   * that a slow request also counts against those that couldn't be sent on time because of it.
+   */
+  public void setRate(double rate) {
+    if (rate < 0) {
+      throw new IllegalArgumentException("rate must not be negative");
+    }
+    this.rate = rate;
+  }
+
+  /** Sets how long to send requests before starting to measure; defaults to no warm-up. */
+  public void setWarmup(long warmup, TimeUnit unit) {
+    if (warmup < 0) {
+      throw new IllegalArgumentException("warmup must not be negative");
+    }
+    this.warmupNanos = unit.toNanos(warmup);
+  }
+
+  /** Sets how long to send and measure requests, after warm-up; defaults to 10 seconds. */
+  public void setDuration(long duration, TimeUnit unit) {
+    if (duration <= 0) {
+      throw new IllegalArgumentException("duration must be positive");
+    }
+    this.durationNanos = unit.toNanos(duration);
+  }
+
+  /** Sends requests for the configured warm-up and duration, and returns the measurements. */
+  public LoadTestResult run() throws InterruptedException {
+    if (requests.isEmpty()) {
+      throw new IllegalStateException("No request to send");
+    }
+    Client client = resteasy.getClient();
+    if (client == null) {
+      throw new IllegalStateException("InProcessResteasy is not started");
+    }
+
+    long startNanos = System.nanoTime();
+    long measureStartNanos = startNanos + warmupNanos;
+    long endNanos = measureStartNanos + durationNanos;
+    long intervalNanos = (rate > 0) ? (long) (threads * 1e9 / rate) : 0;
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<Worker>> futures = new ArrayList<>(threads);
+    try {
+      for (int i = 0; i < threads; i++) {
+        // Spread the threads' schedules evenly over the interval
+        long firstNanos = startNanos + intervalNanos * i / threads;
+        futures.add(
+            executor.submit(
+                new Worker(client, firstNanos, intervalNanos, measureStartNanos, endNanos)));
+      }
+
+      LatencyHistogram latencies = new LatencyHistogram();
+      long requestCount = 0;
+      long errorCount = 0;
+      long allocatedBytes = 0;
+      for (Future<Worker> future : futures) {
+        Worker worker = future.get();
+        latencies.add(worker.latencies);
+        requestCount += worker.requestCount;
+        errorCount += worker.errorCount;
+        allocatedBytes =
+            (allocatedBytes < 0 || worker.allocatedBytes < 0)
+                ? -1
+                : allocatedBytes + worker.allocatedBytes;
+      }
+      long actualDurationNanos = System.nanoTime() - measureStartNanos;
+      return new LoadTestResult(
+          requestCount, errorCount, actualDurationNanos, latencies, allocatedBytes);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private LoadTestRequest pickRequest() {
+    int value = ThreadLocalRandom.current().nextInt(totalWeight);
+    for (int i = 0; i < requests.size(); i++) {
+      value -= weights.get(i);
+      if (value < 0) {
+        return requests.get(i);
+      }
+    }
+    throw new AssertionError();
+  }
+
+  /** Sends a request and reads its response; returns whether it succeeded. */
+  private static boolean send(Client client, LoadTestRequest request) {
+    try {
+      Response response = request.send(client);
+      try {
+        response.bufferEntity();
+        return response.getStatus() < 400;
+      } finally {
+        response.close();
+      }
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+
+  private static long threadAllocatedBytes() {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadMXBean;
+      if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return -1;
+  }
+
+  private class Worker implements Callable<Worker> {
+    private final Client client;
+    private final long firstNanos;
+    private final long intervalNanos;
+    private final long measureStartNanos;
+    private final long endNanos;
+
+    final LatencyHistogram latencies = new LatencyHistogram();
+    long requestCount;
+    long errorCount;
+    long allocatedBytes;
+
+    Worker(
+        Client client, long firstNanos, long intervalNanos, long measureStartNanos, long endNanos) {
+      this.client = client;
+      this.firstNanos = firstNanos;
+      this.intervalNanos = intervalNanos;
+      this.measureStartNanos = measureStartNanos;
+      this.endNanos = endNanos;
+    }
+
+    @Override
+    public Worker call() {
+      long nextNanos = firstNanos;
+      boolean measuring = false;
+      long allocatedAtStart = 0;
+      while (!Thread.currentThread().isInterrupted()) {
+        long scheduledNanos;
+        if (intervalNanos > 0) {
+          scheduledNanos = nextNanos;
+          nextNanos += intervalNanos;
+          if (scheduledNanos >= endNanos) {
+            break;
+          }
+          waitUntil(scheduledNanos);
+        } else {
+          scheduledNanos = System.nanoTime();
+          if (scheduledNanos >= endNanos) {
+            break;
+          }
+        }
+        if (!measuring && scheduledNanos >= measureStartNanos) {
+          measuring = true;
+          allocatedAtStart = threadAllocatedBytes();
+        }
+
+        boolean success = send(client, pickRequest());
+
+        if (measuring) {
+          latencies.record(System.nanoTime() - scheduledNanos);
+          requestCount++;
+          if (!success) {
+            errorCount++;
+          }
+        }
+      }
+      if (measuring && allocatedAtStart >= 0) {
+        allocatedBytes = threadAllocatedBytes() - allocatedAtStart;
+      } else {
+        allocatedBytes = measuring ? -1 : 0;
+      }
+      return this;
+    }
+
+    private void waitUntil(long nanos) {
+      long remaining;
+      while ((remaining = nanos - System.nanoTime()) > 0
+          && !Thread.currentThread().isInterrupted()) {
+        LockSupport.parkNanos(remaining);
+      }
+    }
+  }
+}
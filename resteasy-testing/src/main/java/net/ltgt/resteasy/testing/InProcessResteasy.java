@@ -17,12 +17,20 @@ package net.ltgt.resteasy.testing;
 
 import java.net.URI;
 import java.security.Principal;
+import java.util.HashSet;
+import java.util.Set;
 import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Application;
 import javax.ws.rs.core.SecurityContext;
 import javax.ws.rs.core.UriBuilder;
 import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.jboss.resteasy.plugins.providers.RegisterBuiltin;
 import org.jboss.resteasy.spi.ResteasyDeployment;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
 import org.junit.rules.ExternalResource;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
 
 /**
  * Creates an in-process Resteasy container and client.
@@ -47,6 +55,21 @@ import org.junit.rules.ExternalResource;
  *   // ...
  * }
  * </code></pre>
+ *
+ * <p>To only start the deployment and create the client once for all tests in a class, use it as a
+ * {@link org.junit.ClassRule ClassRule} along with the rule returned by {@link
+ * #resetBetweenTests()}:
+ *
+ * <pre><code>
+ * &#064;ClassRule public static InProcessResteasy resteasy = new InProcessResteasy();
+ * &#064;Rule public TestRule reset = resteasy.resetBetweenTests();
+ * </code></pre>
+ *
+ * <p>A deployment used as a {@code ClassRule} can also be shared by tests running in parallel,
+ * without {@link #resetBetweenTests()}. Resources and providers must then be registered in {@link
+ * #configureDeployment} rather than by tests, and each test must set its security identity and
+ * context objects by registering a {@link TestSecurityFilter} and {@link TestContextObjects} on its
+ * own web target, rather than on the deployment.
  */
 public class InProcessResteasy extends ExternalResource {
 
@@ -56,8 +79,17 @@ public class InProcessResteasy extends ExternalResource {
   private final UriBuilder baseUriBuilder;
 
   private ResteasyDeployment deployment;
+  private Set<Class<?>> builtinProviderClasses;
+  private Set<Class<?>> baseProviderClasses;
+  private Set<Object> baseProviderInstances;
   private Client client;
 
+  private long startupNanos;
+  private long resetNanos;
+  private int resetCount;
+  private long testNanos;
+  private int testCount;
+
   public InProcessResteasy() {
     this(DEFAULT_BASE_URI);
   }
@@ -83,31 +115,133 @@ public class InProcessResteasy extends ExternalResource {
     return client;
   }
 
+  /** Returns how much time has been spent starting and resetting the deployment, and in tests. */
+  public final DeploymentTimings getTimings() {
+    return new DeploymentTimings(startupNanos, resetNanos, resetCount, testNanos, testCount);
+  }
+
+  /**
+   * Returns a rule that resets the deployment before each test, when this rule is used as a {@link
+   * org.junit.ClassRule ClassRule}.
+   *
+   * <p>The deployment is restarted with a new registry, and a new provider factory where the
+   * built-in providers and those {@linkplain #configureDeployment configured} for the deployment
+   * are registered again, so that resources, providers and context objects registered by a test
+   * don't leak into the next one. This is much cheaper than starting a new deployment, as built-in
+   * providers aren't looked up again. The client is kept as-is, so tests shouldn't register
+   * providers on it.
+   */
+  public final TestRule resetBetweenTests() {
+    return new TestRule() {
+      @Override
+      public Statement apply(final Statement base, Description description) {
+        return new Statement() {
+          @Override
+          public void evaluate() throws Throwable {
+            reset();
+            long start = System.nanoTime();
+            try {
+              base.evaluate();
+            } finally {
+              testNanos += System.nanoTime() - start;
+              testCount++;
+            }
+          }
+        };
+      }
+    };
+  }
+
   @Override
   protected final void before() throws Throwable {
+    long start = System.nanoTime();
     deployment = new ResteasyDeployment();
     deployment.getDefaultContextObjects().put(SecurityContext.class, new DummySecurityContext());
+    deployment.getProviders().add(new InProcessContextFilter());
     configureDeployment(deployment);
 
     deployment.start();
 
-    ResteasyClientBuilder builder =
-        new ResteasyClientBuilder()
-            .httpEngine(new InProcessClientHttpEngine(deployment.getDispatcher(), baseUri));
+    InProcessClientHttpEngine engine = new InProcessClientHttpEngine(deployment, baseUri);
+    configureEngine(engine);
+    ResteasyClientBuilder builder = new ResteasyClientBuilder().httpEngine(engine);
     configureClient(builder);
     client = builder.build();
+    startupNanos = System.nanoTime() - start;
   }
 
   @Override
   protected final void after() {
     deployment.stop();
     client.close();
+    deployment = null;
+    builtinProviderClasses = null;
+    baseProviderClasses = null;
+    baseProviderInstances = null;
+  }
+
+  private void reset() {
+    if (deployment == null) {
+      throw new IllegalStateException(
+          "The deployment is not started; InProcessResteasy must be used as a @ClassRule");
+    }
+    long start = System.nanoTime();
+    if (baseProviderClasses == null) {
+      ResteasyProviderFactory builtins = new ResteasyProviderFactory();
+      RegisterBuiltin.register(builtins);
+      builtinProviderClasses = builtins.getProviderClasses();
+      ResteasyProviderFactory providerFactory = deployment.getProviderFactory();
+      baseProviderInstances = providerFactory.getProviderInstances();
+      baseProviderClasses = new HashSet<>(providerFactory.getProviderClasses());
+      baseProviderClasses.removeAll(builtinProviderClasses);
+      for (Object provider : baseProviderInstances) {
+        baseProviderClasses.remove(provider.getClass());
+      }
+      // Those have been registered in the provider factory already, and will be registered again
+      // from the above sets in each test's provider factory.
+      deployment.setRegisterBuiltin(false);
+      deployment.getProviders().clear();
+      deployment.getProviderClasses().clear();
+      deployment.getActualProviderClasses().clear();
+      deployment.getScannedProviderClasses().clear();
+      // The application's classes and singletons have been added to the above lists and those of
+      // resources, so it must not be processed again.
+      Application application = deployment.getApplication();
+      if (application != null) {
+        deployment.getDefaultContextObjects().put(Application.class, application);
+        deployment.setApplication(null);
+        deployment.setApplicationClass(null);
+      }
+    }
+    deployment.stop();
+    deployment.setDispatcher(null);
+    deployment.setRegistry(null);
+    // Don't chain the provider factory to the one of the initial deployment: resources would then
+    // ignore the filters registered by tests after the resources.
+    ResteasyProviderFactory providerFactory = new ResteasyProviderFactory();
+    for (Class<?> provider : builtinProviderClasses) {
+      providerFactory.registerProvider(provider, true);
+    }
+    for (Class<?> provider : baseProviderClasses) {
+      providerFactory.registerProvider(provider);
+    }
+    for (Object provider : baseProviderInstances) {
+      providerFactory.registerProviderInstance(provider);
+    }
+    deployment.setProviderFactory(providerFactory);
+    deployment.start();
+    resetNanos += System.nanoTime() - start;
+    resetCount++;
   }
 
   protected void configureDeployment(ResteasyDeployment deployment) {
     // no-op
   }
 
+  protected void configureEngine(InProcessClientHttpEngine engine) {
+    // no-op
+  }
+
   protected void configureClient(ResteasyClientBuilder builder) {
     // no-op
   }
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.testing;
+
+/**
+ * A histogram of latencies, in nanoseconds, in the spirit of HdrHistogram.
+ *
+ * <p>Values are counted in buckets whose width grows with the magnitude of the values, so the
+ * histogram has a fixed size whatever the range of values, and the values it reports are within
+ * 1/64th of the recorded ones.
+ *
+ * <p>Instances aren't thread-safe; each thread should record to its own histogram, and they should
+ * be {@linkplain #add merged} afterwards.
+ */
+final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 7;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+  private static final int MAX_SHIFT = Long.SIZE - SUB_BUCKET_BITS;
+
+  private final long[] counts = new long[SUB_BUCKET_COUNT + MAX_SHIFT * SUB_BUCKET_HALF_COUNT];
+  private long totalCount;
+  private long min = Long.MAX_VALUE;
+  private long max;
+  private double sum;
+
+  void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    counts[indexOf(value)]++;
+    totalCount++;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+    sum += value;
+  }
+
+  void add(LatencyHistogram other) {
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] += other.counts[i];
+    }
+    totalCount += other.totalCount;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+    sum += other.sum;
+  }
+
+  long getTotalCount() {
+    return totalCount;
+  }
+
+  long getMin() {
+    return totalCount == 0 ? 0 : min;
+  }
+
+  long getMax() {
+    return max;
+  }
+
+  double getMean() {
+    return totalCount == 0 ? 0 : sum / totalCount;
+  }
+
+  /** Returns the value below which the given percentage of recorded values fall. */
+  long getValueAtPercentile(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("percentile must be between 0 and 100");
+    }
+    if (totalCount == 0) {
+      return 0;
+    }
+    long target = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+    long count = 0;
+    for (int i = 0; i < counts.length; i++) {
+      count += counts[i];
+      if (count >= target) {
+        return Math.max(min, Math.min(max, highestValueAt(i)));
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Values below {@link #SUB_BUCKET_COUNT} have their own bucket. Larger values are shifted right
+   * until they're between {@link #SUB_BUCKET_HALF_COUNT} and {@link #SUB_BUCKET_COUNT}, and the
+   * buckets for each shift follow each other.
+   */
+  static int indexOf(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+    int subBucket = (int) (value >>> shift) - SUB_BUCKET_HALF_COUNT;
+    return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT + subBucket;
+  }
+
+  /** Returns the highest value that would be counted in the bucket at the given index. */
+  static long highestValueAt(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1;
+    long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
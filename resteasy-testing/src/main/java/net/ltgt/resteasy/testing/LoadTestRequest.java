@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.testing;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Response;
+
+/**
+ * A request sent by an {@link InProcessLoadTest}.
+ *
+ * <p>It's called concurrently from several threads, so it must create a new request each time.
+ */
+public interface LoadTestRequest {
+  /**
+   * Sends the request using the given client and returns the response, whose entity will then be
+   * read fully and discarded.
+   */
+  Response send(Client client);
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.testing;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The results of an {@link InProcessLoadTest} run, excluding warm-up.
+ *
+ * <p>Latencies are accurate to about 1.5%.
+ *
+ * @see InProcessLoadTest#run()
+ */
+public final class LoadTestResult {
+  private final long requestCount;
+  private final long errorCount;
+  private final long durationNanos;
+  private final LatencyHistogram latencies;
+  private final long allocatedBytes;
+
+  LoadTestResult(
+      long requestCount,
+      long errorCount,
+      long durationNanos,
+      LatencyHistogram latencies,
+      long allocatedBytes) {
+    this.requestCount = requestCount;
+    this.errorCount = errorCount;
+    this.durationNanos = durationNanos;
+    this.latencies = latencies;
+    this.allocatedBytes = allocatedBytes;
+  }
+
+  /** Returns the number of requests sent. */
+  public long getRequestCount() {
+    return requestCount;
+  }
+
+  /**
+   * Returns the number of requests that failed, either with an exception or with a status code of
+   * 400 or above.
+   */
+  public long getErrorCount() {
+    return errorCount;
+  }
+
+  /** Returns the duration of the run. */
+  public long getDuration(TimeUnit unit) {
+    return unit.convert(durationNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /** Returns the number of requests per second. */
+  public double getThroughput() {
+    return durationNanos == 0 ? 0 : requestCount * 1e9 / durationNanos;
+  }
+
+  /**
+   * Returns the latency below which the given percentage of requests completed.
+   *
+   * <p>At a fixed rate, latencies are measured from the time requests were scheduled to be sent, so
+   * they include the time spent waiting for previous requests to complete.
+   */
+  public long getLatencyAtPercentile(double percentile, TimeUnit unit) {
+    return unit.convert(latencies.getValueAtPercentile(percentile), TimeUnit.NANOSECONDS);
+  }
+
+  /** Returns the highest latency. */
+  public long getMaxLatency(TimeUnit unit) {
+    return unit.convert(latencies.getMax(), TimeUnit.NANOSECONDS);
+  }
+
+  /** Returns the average latency. */
+  public long getMeanLatency(TimeUnit unit) {
+    return unit.convert(Math.round(latencies.getMean()), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the average number of bytes allocated per request by the threads sending them, or
+   * {@code -1} if the JVM cannot measure it.
+   */
+  public long getAllocatedBytesPerRequest() {
+    if (allocatedBytes < 0) {
+      return -1;
+    }
+    return requestCount == 0 ? 0 : allocatedBytes / requestCount;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        Locale.ROOT,
+        "LoadTestResult{requests=%d, errors=%d, throughput=%.1f/s, latency(us): p50=%d, p90=%d,"
+            + " p99=%d, p99.9=%d, max=%d, allocated=%d B/request}",
+        requestCount,
+        errorCount,
+        getThroughput(),
+        getLatencyAtPercentile(50, TimeUnit.MICROSECONDS),
+        getLatencyAtPercentile(90, TimeUnit.MICROSECONDS),
+        getLatencyAtPercentile(99, TimeUnit.MICROSECONDS),
+        getLatencyAtPercentile(99.9, TimeUnit.MICROSECONDS),
+        getMaxLatency(TimeUnit.MICROSECONDS),
+        getAllocatedBytesPerRequest());
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.testing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * A bounded in-memory pipe between a thread writing to its {@linkplain #sink() sink} and another
+ * thread reading from its {@linkplain #source() source}.
+ *
+ * <p>Writes block while the pipe is full, and reads block while it's empty. Contrary to {@link
+ * java.io.PipedInputStream}, it doesn't depend on the liveness of the reading and writing threads
+ * (which can thus be pooled), the writer can {@linkplain #fail fail} the pipe so that the reader
+ * sees the error, and the reader closing the source makes subsequent writes fail.
+ */
+final class Pipe {
+  private final byte[] buffer;
+  /** The index of the next byte to read. */
+  private int head;
+  /** The number of bytes available to read. */
+  private int count;
+
+  private boolean sinkClosed;
+  private boolean sourceClosed;
+  private Throwable failure;
+
+  private final OutputStream sink = new PipeSink();
+  private final InputStream source = new PipeSource();
+
+  Pipe(int size) {
+    if (size <= 0) {
+      throw new IllegalArgumentException("size must be positive");
+    }
+    this.buffer = new byte[size];
+  }
+
+  OutputStream sink() {
+    return sink;
+  }
+
+  InputStream source() {
+    return source;
+  }
+
+  /** Closes the sink, so that reads return end of stream once the pipe is drained. */
+  synchronized void closeSink() {
+    sinkClosed = true;
+    notifyAll();
+  }
+
+  /** Closes the sink, and makes reads fail with the given error once the pipe is drained. */
+  synchronized void fail(Throwable failure) {
+    this.failure = failure;
+    sinkClosed = true;
+    notifyAll();
+  }
+
+  private class PipeSink extends OutputStream {
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (off < 0 || len < 0 || off + len > b.length || off + len < 0) {
+        throw new IndexOutOfBoundsException();
+      }
+      synchronized (Pipe.this) {
+        while (len > 0) {
+          try {
+            while (count == buffer.length && !sourceClosed && !sinkClosed) {
+              Pipe.this.wait();
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+          }
+          if (sinkClosed) {
+            throw new IOException("Pipe closed");
+          }
+          if (sourceClosed) {
+            throw new IOException("Pipe closed by the reader");
+          }
+          int tail = (head + count) % buffer.length;
+          int length = Math.min(len, Math.min(buffer.length - count, buffer.length - tail));
+          System.arraycopy(b, off, buffer, tail, length);
+          count += length;
+          off += length;
+          len -= length;
+          Pipe.this.notifyAll();
+        }
+      }
+    }
+
+    @Override
+    public void close() {
+      closeSink();
+    }
+  }
+
+  private class PipeSource extends InputStream {
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return (read(b, 0, 1) == -1) ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (off < 0 || len < 0 || off + len > b.length || off + len < 0) {
+        throw new IndexOutOfBoundsException();
+      }
+      if (len == 0) {
+        return 0;
+      }
+      synchronized (Pipe.this) {
+        try {
+          while (count == 0 && !sinkClosed && !sourceClosed) {
+            Pipe.this.wait();
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+        if (sourceClosed) {
+          throw new IOException("Pipe closed");
+        }
+        if (count == 0) {
+          if (failure != null) {
+            throw new IOException(failure);
+          }
+          return -1;
+        }
+        int length = Math.min(len, Math.min(count, buffer.length - head));
+        System.arraycopy(buffer, head, b, off, length);
+        head = (head + length) % buffer.length;
+        count -= length;
+        Pipe.this.notifyAll();
+        return length;
+      }
+    }
+
+    @Override
+    public int available() {
+      synchronized (Pipe.this) {
+        return count;
+      }
+    }
+
+    @Override
+    public void close() {
+      synchronized (Pipe.this) {
+        sourceClosed = true;
+        count = 0;
+        Pipe.this.notifyAll();
+      }
+    }
+  }
+}
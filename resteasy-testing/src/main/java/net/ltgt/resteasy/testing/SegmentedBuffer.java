@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.testing;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An in-memory buffer that can be written to as an {@link OutputStream}, then read from as an
+ * {@link InputStream}, without copying its content to an intermediate array.
+ *
+ * <p>Contrary to a {@link java.io.ByteArrayOutputStream}, the content is stored in segments that
+ * are never copied to grow the buffer, and reading doesn't need to copy it to a new array first.
+ * Segments grow in size, up to {@link #MAX_SEGMENT_SIZE}, so small contents still need small
+ * allocations.
+ */
+final class SegmentedBuffer extends OutputStream {
+  private static final int MIN_SEGMENT_SIZE = 256;
+  static final int MAX_SEGMENT_SIZE = 64 * 1024;
+
+  private final List<byte[]> segments = new ArrayList<>();
+  /** The number of bytes written to the last segment. */
+  private int position;
+
+  private long size;
+
+  @Override
+  public void write(int b) {
+    byte[] segment = writableSegment();
+    segment[position++] = (byte) b;
+    size++;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    if (off < 0 || len < 0 || off + len > b.length || off + len < 0) {
+      throw new IndexOutOfBoundsException();
+    }
+    while (len > 0) {
+      byte[] segment = writableSegment();
+      int count = Math.min(len, segment.length - position);
+      System.arraycopy(b, off, segment, position, count);
+      position += count;
+      size += count;
+      off += count;
+      len -= count;
+    }
+  }
+
+  private byte[] writableSegment() {
+    if (!segments.isEmpty()) {
+      byte[] last = segments.get(segments.size() - 1);
+      if (position < last.length) {
+        return last;
+      }
+    }
+    int segmentSize =
+        segments.isEmpty()
+            ? MIN_SEGMENT_SIZE
+            : Math.min(MAX_SEGMENT_SIZE, segments.get(segments.size() - 1).length * 2);
+    byte[] segment = new byte[segmentSize];
+    segments.add(segment);
+    position = 0;
+    return segment;
+  }
+
+  /** Returns the number of bytes written. */
+  long size() {
+    return size;
+  }
+
+  /** Discards the content of the buffer. */
+  void reset() {
+    segments.clear();
+    position = 0;
+    size = 0;
+  }
+
+  /** Returns a copy of the content of the buffer. */
+  byte[] toByteArray() {
+    if (size > Integer.MAX_VALUE) {
+      throw new OutOfMemoryError("Buffer too large: " + size);
+    }
+    byte[] result = new byte[(int) size];
+    int offset = 0;
+    for (int i = 0; i < segments.size(); i++) {
+      int count = segmentLength(i);
+      System.arraycopy(segments.get(i), 0, result, offset, count);
+      offset += count;
+    }
+    return result;
+  }
+
+  /**
+   * Returns a stream reading the content of the buffer.
+   *
+   * <p>The stream reads the segments in place, so the buffer must not be written to or reset while
+   * it's being read.
+   */
+  InputStream newInputStream() {
+    return new SegmentedInputStream();
+  }
+
+  private int segmentLength(int index) {
+    return (index == segments.size() - 1) ? position : segments.get(index).length;
+  }
+
+  private class SegmentedInputStream extends InputStream {
+    private int segmentIndex;
+    private int segmentPosition;
+    private long remaining = size;
+
+    @Override
+    public int read() {
+      if (!advance()) {
+        return -1;
+      }
+      remaining--;
+      return segments.get(segmentIndex)[segmentPosition++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (off < 0 || len < 0 || off + len > b.length || off + len < 0) {
+        throw new IndexOutOfBoundsException();
+      }
+      if (len == 0) {
+        return 0;
+      }
+      if (!advance()) {
+        return -1;
+      }
+      int count = Math.min(len, segmentLength(segmentIndex) - segmentPosition);
+      System.arraycopy(segments.get(segmentIndex), segmentPosition, b, off, count);
+      segmentPosition += count;
+      remaining -= count;
+      return count;
+    }
+
+    @Override
+    public long skip(long n) {
+      long skipped = 0;
+      while (skipped < n && advance()) {
+        int count = (int) Math.min(n - skipped, segmentLength(segmentIndex) - segmentPosition);
+        segmentPosition += count;
+        remaining -= count;
+        skipped += count;
+      }
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+      return (int) Math.min(Integer.MAX_VALUE, remaining);
+    }
+
+    /** Moves to the next segment if the current one has been read; returns false at the end. */
+    private boolean advance() {
+      if (remaining <= 0) {
+        return false;
+      }
+      while (segmentPosition >= segmentLength(segmentIndex)) {
+        segmentIndex++;
+        segmentPosition = 0;
+      }
+      return true;
+    }
+  }
+}
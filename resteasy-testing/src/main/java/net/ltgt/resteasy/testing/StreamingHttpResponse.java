@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.testing;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import org.jboss.resteasy.mock.MockHttpResponse;
+
+/**
+ * A {@link MockHttpResponse} whose output is streamed through a {@link Pipe} while the request is
+ * being dispatched on another thread.
+ *
+ * <p>The response is committed, and its status and headers can be read, as soon as the first byte
+ * is written or the output is flushed, or once the dispatch completes.
+ */
+final class StreamingHttpResponse extends MockHttpResponse {
+  private final Pipe pipe;
+  private final CountDownLatch committed = new CountDownLatch(1);
+  private OutputStream outputStream;
+  private volatile Throwable failure;
+
+  StreamingHttpResponse(int pipeSize) {
+    this.pipe = new Pipe(pipeSize);
+    this.outputStream = new CommittingOutputStream(pipe.sink());
+  }
+
+  @Override
+  public OutputStream getOutputStream() {
+    return outputStream;
+  }
+
+  @Override
+  public void setOutputStream(OutputStream outputStream) {
+    this.outputStream = outputStream;
+  }
+
+  @Override
+  public boolean isCommitted() {
+    return committed.getCount() == 0;
+  }
+
+  @Override
+  public void reset() {
+    if (isCommitted()) {
+      throw new IllegalStateException("Response has already been committed");
+    }
+    super.reset();
+  }
+
+  @Override
+  public byte[] getOutput() {
+    throw new UnsupportedOperationException("The output is streamed, see getEntityStream()");
+  }
+
+  /** Returns the stream to read the output from. */
+  InputStream getEntityStream() {
+    return pipe.source();
+  }
+
+  /**
+   * Marks the dispatch as complete, with the given error or {@code null} if it succeeded.
+   *
+   * <p>The error is reported by {@link #getFailure()} if the response hadn't been committed yet, or
+   * by the entity stream otherwise.
+   */
+  void complete(Throwable failure) {
+    if (failure == null) {
+      pipe.closeSink();
+    } else {
+      if (!isCommitted()) {
+        this.failure = failure;
+      }
+      pipe.fail(failure);
+    }
+    committed.countDown();
+  }
+
+  /** Waits until the response is committed or the dispatch completes. */
+  void awaitCommitted() throws InterruptedException {
+    committed.await();
+  }
+
+  /** Returns the error that made the dispatch fail before the response was committed, if any. */
+  Throwable getFailure() {
+    return failure;
+  }
+
+  private class CommittingOutputStream extends FilterOutputStream {
+    CommittingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    // Status and headers are set before the first write, and the response must be committed
+    // before writing to the pipe, as the write could block until the client reads.
+
+    @Override
+    public void write(int b) throws IOException {
+      committed.countDown();
+      out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (len > 0) {
+        committed.countDown();
+        out.write(b, off, len);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      committed.countDown();
+      out.flush();
+    }
+
+    @Override
+    public void close() {
+      // Closed when the dispatch completes, as errors could still be reported.
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.testing;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.core.Context;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+
+/**
+ * Provides objects for {@link Context} injection to the requests sent by the client or web target
+ * it's registered with, overriding the deployment's default context objects.
+ *
+ * <p>Contrary to default context objects, this is safe to use in tests running in parallel against
+ * a shared {@link InProcessResteasy}, as long as each test registers its own instance on its own
+ * web target:
+ *
+ * <pre><code>
+ * Response response = resteasy.getClient()
+ *     .target(resteasy.getBaseUriBuilder().path(DummyResource.class))
+ *     .register(new TestContextObjects().put(Clock.class, fixedClock))
+ *     .request().get();
+ * </code></pre>
+ */
+public class TestContextObjects implements ClientRequestFilter {
+  private final Map<Class<?>, Object> contextObjects = new ConcurrentHashMap<>();
+
+  public <T> TestContextObjects put(Class<T> type, T object) {
+    contextObjects.put(type, type.cast(object));
+    return this;
+  }
+
+  @Override
+  public void filter(ClientRequestContext requestContext) throws IOException {
+    requestContext.setProperty(InProcessContextFilter.CONTEXT_OBJECTS_PROPERTY, this);
+  }
+
+  void push() {
+    for (Map.Entry<Class<?>, Object> contextObject : contextObjects.entrySet()) {
+      push(contextObject.getKey(), contextObject.getValue());
+    }
+  }
+
+  private static <T> void push(Class<T> type, Object object) {
+    ResteasyProviderFactory.pushContext(type, type.cast(object));
+  }
+}
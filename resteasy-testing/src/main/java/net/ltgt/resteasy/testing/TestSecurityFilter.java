@@ -22,12 +22,32 @@ import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Objects;
 import java.util.Set;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerRequestFilter;
 import javax.ws.rs.core.SecurityContext;
 import org.jboss.resteasy.plugins.server.embedded.SimplePrincipal;
 
-public class TestSecurityFilter implements ContainerRequestFilter {
+/**
+ * Sets the {@link SecurityContext} of requests.
+ *
+ * <p>It can either be registered on the deployment's provider factory, to apply to all requests, or
+ * on the client or a web target of an {@link InProcessResteasy}, to only apply to the requests sent
+ * through it. The latter is safe to use in tests running in parallel against a shared {@link
+ * InProcessResteasy}, as long as each test uses its own web target:
+ *
+ * <pre><code>
+ * Response response = resteasy.getClient()
+ *     .target(resteasy.getBaseUriBuilder().path(DummyResource.class))
+ *     .register(new TestSecurityFilter("username", SecurityContext.FORM_AUTH))
+ *     .request().get();
+ * </code></pre>
+ *
+ * <p>When registered on the deployment's provider factory, it takes precedence over those
+ * registered on clients.
+ */
+public class TestSecurityFilter implements ContainerRequestFilter, ClientRequestFilter {
   private final Principal userPrincipal;
   private final Set<String> roles;
   private final boolean secure;
@@ -94,6 +114,11 @@ public class TestSecurityFilter implements ContainerRequestFilter {
     this.authenticationScheme = authenticationScheme;
   }
 
+  @Override
+  public void filter(ClientRequestContext requestContext) throws IOException {
+    requestContext.setProperty(InProcessContextFilter.SECURITY_FILTER_PROPERTY, this);
+  }
+
   @Override
   public void filter(ContainerRequestContext requestContext) throws IOException {
     requestContext.setSecurityContext(
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.testing;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.Random;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.MediaType;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class InProcessClientHttpEngineTest {
+  private static final byte[] LARGE_PAYLOAD = new byte[3 * 1024 * 1024 + 17];
+
+  static {
+    new Random(42).nextBytes(LARGE_PAYLOAD);
+  }
+
+  @Rule public InProcessResteasy resteasy = new InProcessResteasy();
+
+  @Before
+  public void setup() {
+    resteasy.getDeployment().getRegistry().addPerRequestResource(EchoResource.class);
+  }
+
+  @Test
+  public void largePayload() {
+    byte[] response =
+        resteasy
+            .getClient()
+            .target(resteasy.getBaseUriBuilder().path(EchoResource.class))
+            .request()
+            .post(Entity.entity(LARGE_PAYLOAD, MediaType.APPLICATION_OCTET_STREAM), byte[].class);
+
+    assertThat(response).isEqualTo(LARGE_PAYLOAD);
+  }
+
+  @Test
+  public void emptyPayload() {
+    byte[] response =
+        resteasy
+            .getClient()
+            .target(resteasy.getBaseUriBuilder().path(EchoResource.class))
+            .request()
+            .post(Entity.entity(new byte[0], MediaType.APPLICATION_OCTET_STREAM), byte[].class);
+
+    assertThat(response).isEmpty();
+  }
+
+  @Path("/echo")
+  public static class EchoResource {
+    @POST
+    public byte[] echo(byte[] payload) {
+      return payload;
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.testing;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Response;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class InProcessLoadTestTest {
+  @Rule public InProcessResteasy resteasy = new InProcessResteasy();
+
+  private InProcessLoadTest loadTest;
+
+  @Before
+  public void setup() {
+    resteasy.getDeployment().getRegistry().addPerRequestResource(Resource.class);
+
+    loadTest = new InProcessLoadTest(resteasy);
+    loadTest.setThreads(2);
+    loadTest.setWarmup(100, TimeUnit.MILLISECONDS);
+    loadTest.setDuration(500, TimeUnit.MILLISECONDS);
+    loadTest.addRequest(3, request("ok"));
+    loadTest.addRequest(1, request("missing"));
+  }
+
+  @Test
+  public void maxThroughput() throws Exception {
+    LoadTestResult result = loadTest.run();
+
+    assertThat(result.getRequestCount()).isPositive();
+    assertThat(result.getErrorCount()).isPositive().isLessThan(result.getRequestCount());
+    assertThat(result.getThroughput()).isPositive();
+    assertThat(result.getDuration(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(500);
+    assertThat(result.getLatencyAtPercentile(50, TimeUnit.NANOSECONDS))
+        .isPositive()
+        .isLessThanOrEqualTo(result.getLatencyAtPercentile(99, TimeUnit.NANOSECONDS));
+    assertThat(result.getLatencyAtPercentile(99, TimeUnit.NANOSECONDS))
+        .isLessThanOrEqualTo(result.getMaxLatency(TimeUnit.NANOSECONDS));
+  }
+
+  @Test
+  public void fixedRate() throws Exception {
+    loadTest.setRate(200);
+
+    LoadTestResult result = loadTest.run();
+
+    // 200 requests per second for 500ms
+    assertThat(result.getRequestCount()).isBetween(80L, 120L);
+  }
+
+  @Test
+  public void histogram() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long value = 1; value <= 100_000; value++) {
+      histogram.record(value * 1000);
+    }
+
+    assertThat(histogram.getTotalCount()).isEqualTo(100_000);
+    assertThat(histogram.getMin()).isEqualTo(1000);
+    assertThat(histogram.getMax()).isEqualTo(100_000_000);
+    assertThat(histogram.getMean()).isCloseTo(50_000_500.0, within(1.0));
+    assertThat(histogram.getValueAtPercentile(50))
+        .isBetween(50_000_000L, (long) (50_000_000 * (1 + 1 / 64.0)));
+    assertThat(histogram.getValueAtPercentile(99.9))
+        .isBetween(99_900_000L, (long) (99_900_000 * (1 + 1 / 64.0)));
+    assertThat(histogram.getValueAtPercentile(100)).isEqualTo(100_000_000);
+
+    for (long value : new long[] {0, 1, 127, 128, 129, 1000, Long.MAX_VALUE / 3, Long.MAX_VALUE}) {
+      int index = LatencyHistogram.indexOf(value);
+      assertThat(LatencyHistogram.highestValueAt(index)).isGreaterThanOrEqualTo(value);
+      if (index > 0) {
+        assertThat(LatencyHistogram.highestValueAt(index - 1)).isLessThan(value);
+      }
+    }
+  }
+
+  private LoadTestRequest request(final String path) {
+    return new LoadTestRequest() {
+      @Override
+      public Response send(Client client) {
+        return client
+            .target(resteasy.getBaseUriBuilder().path(Resource.class).path(path))
+            .request()
+            .get();
+      }
+    };
+  }
+
+  @Path("/load")
+  public static class Resource {
+    @GET
+    @Path("ok")
+    public String ok() {
+      return "OK";
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.testing;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.SecurityContext;
+import org.junit.ClassRule;
+import org.junit.FixMethodOrder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.runners.MethodSorters;
+
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class SharedInProcessResteasyTest {
+  @ClassRule public static InProcessResteasy resteasy = new InProcessResteasy();
+  @Rule public TestRule reset = resteasy.resetBetweenTests();
+
+  @Test
+  public void test1_authenticated() {
+    resteasy.getDeployment().getRegistry().addPerRequestResource(Resource.class);
+    resteasy
+        .getDeployment()
+        .getProviderFactory()
+        .register(new TestSecurityFilter("username", SecurityContext.FORM_AUTH));
+
+    assertThat(get()).isEqualTo("username");
+  }
+
+  @Test
+  public void test2_resetsProvidersAndResources() {
+    Response response =
+        resteasy
+            .getClient()
+            .target(resteasy.getBaseUriBuilder().path(Resource.class))
+            .request()
+            .get();
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.NOT_FOUND);
+    response.close();
+
+    resteasy.getDeployment().getRegistry().addPerRequestResource(Resource.class);
+
+    assertThat(get()).isEqualTo("anonymous");
+  }
+
+  @Test
+  public void test3_timings() {
+    DeploymentTimings timings = resteasy.getTimings();
+    assertThat(timings.getStartupTime(TimeUnit.NANOSECONDS)).isPositive();
+    assertThat(timings.getResetCount()).isEqualTo(3);
+    assertThat(timings.getTestCount()).isEqualTo(2);
+  }
+
+  private String get() {
+    Response response =
+        resteasy
+            .getClient()
+            .target(resteasy.getBaseUriBuilder().path(Resource.class))
+            .request()
+            .get();
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    return response.readEntity(String.class);
+  }
+
+  @Path("/")
+  public static class Resource {
+    @Context SecurityContext securityContext;
+
+    @GET
+    public String get() {
+      return securityContext.getUserPrincipal() == null
+          ? "anonymous"
+          : securityContext.getUserPrincipal().getName();
+    }
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2015 Thomas Broyer (t.broyer@ltgt.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.ltgt.resteasy.testing;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class StreamingDispatchTest {
+  private static final int PIPE_SIZE = 1024;
+
+  static CountDownLatch firstChunkRead;
+  static CountDownLatch serverFailed;
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @Rule
+  public InProcessResteasy resteasy =
+      new InProcessResteasy() {
+        @Override
+        protected void configureEngine(InProcessClientHttpEngine engine) {
+          engine.setStreamingDispatch(executor, PIPE_SIZE);
+        }
+      };
+
+  @Before
+  public void setup() {
+    firstChunkRead = new CountDownLatch(1);
+    serverFailed = new CountDownLatch(1);
+    resteasy.getDeployment().getRegistry().addPerRequestResource(StreamingResource.class);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void readsBeforeResponseIsComplete() throws Exception {
+    Response response =
+        resteasy
+            .getClient()
+            .target(resteasy.getBaseUriBuilder().path(StreamingResource.class).path("chunks"))
+            .request()
+            .get();
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    assertThat(response.getMediaType()).isEqualTo(MediaType.TEXT_PLAIN_TYPE);
+
+    try (InputStream stream = response.readEntity(InputStream.class)) {
+      // The server waits for firstChunkRead before writing the second chunk
+      assertThat(readFully(stream, "first\n".length())).isEqualTo("first\n");
+      firstChunkRead.countDown();
+      assertThat(readFully(stream, "second\n".length())).isEqualTo("second\n");
+      assertThat(stream.read()).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  public void closingResponseStopsServer() throws Exception {
+    Response response =
+        resteasy
+            .getClient()
+            .target(resteasy.getBaseUriBuilder().path(StreamingResource.class).path("infinite"))
+            .request()
+            .get();
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+
+    InputStream stream = response.readEntity(InputStream.class);
+    readFully(stream, 10 * PIPE_SIZE);
+    response.close();
+
+    assertThat(serverFailed.await(10, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void emptyResponse() {
+    String response =
+        resteasy
+            .getClient()
+            .target(resteasy.getBaseUriBuilder().path(StreamingResource.class).path("empty"))
+            .request()
+            .get(String.class);
+    assertThat(response).isEmpty();
+  }
+
+  private static String readFully(InputStream stream, int length) throws IOException {
+    byte[] bytes = new byte[length];
+    int offset = 0;
+    while (offset < length) {
+      int read = stream.read(bytes, offset, length - offset);
+      assertThat(read).isNotEqualTo(-1);
+      offset += read;
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  @Path("/streaming")
+  public static class StreamingResource {
+    @GET
+    @Path("chunks")
+    @Produces(MediaType.TEXT_PLAIN)
+    public StreamingOutput chunks() {
+      return new StreamingOutput() {
+        @Override
+        public void write(OutputStream output) throws IOException, WebApplicationException {
+          output.write("first\n".getBytes(StandardCharsets.UTF_8));
+          output.flush();
+          try {
+            if (!firstChunkRead.await(10, TimeUnit.SECONDS)) {
+              throw new IOException("Timed out waiting for the client to read the first chunk");
+            }
+          } catch (InterruptedException e) {
+            throw new IOException(e);
+          }
+          output.write("second\n".getBytes(StandardCharsets.UTF_8));
+        }
+      };
+    }
+
+    @GET
+    @Path("infinite")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public StreamingOutput infinite() {
+      return new StreamingOutput() {
+        @Override
+        public void write(OutputStream output) throws IOException, WebApplicationException {
+          byte[] chunk = new byte[PIPE_SIZE / 4];
+          try {
+            while (true) {
+              output.write(chunk);
+            }
+          } catch (IOException e) {
+            serverFailed.countDown();
+            throw e;
+          }
+        }
+      };
+    }
+
+    @GET
+    @Path("empty")
+    @Produces(MediaType.TEXT_PLAIN)
+    public String empty() {
+      return "";
+    }
+  }
+}
@@ -18,7 +18,14 @@ package net.ltgt.resteasy.testing;
 import static org.assertj.core.api.Assertions.*;
 
 import java.nio.file.attribute.UserPrincipal;
+import java.security.Principal;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.core.Context;
@@ -54,6 +61,54 @@ public class TestSecurityFilterTest {
     assertThat(response.readEntity(String.class)).isEqualTo("OK");
   }
 
+  @Test
+  public void perTargetInParallel() throws Exception {
+    resteasy.getDeployment().getRegistry().addPerRequestResource(IdentityResource.class);
+    resteasy
+        .getDeployment()
+        .getDispatcher()
+        .getDefaultContextObjects()
+        .put(Greeting.class, new DefaultGreeting());
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 16; i++) {
+        final String username = "user" + i;
+        results.add(
+            executor.submit(
+                new Callable<String>() {
+                  @Override
+                  public String call() {
+                    TestContextObjects contextObjects =
+                        new TestContextObjects().put(Greeting.class, new CustomGreeting());
+                    return resteasy
+                        .getClient()
+                        .target(resteasy.getBaseUriBuilder().path(IdentityResource.class))
+                        .register(new TestSecurityFilter(username, SecurityContext.BASIC_AUTH))
+                        .register(contextObjects)
+                        .request()
+                        .get(String.class);
+                  }
+                }));
+      }
+      for (int i = 0; i < results.size(); i++) {
+        assertThat(results.get(i).get()).isEqualTo("Howdy user" + i);
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    // Without per-target registrations, the deployment's default context objects are used
+    String anonymous =
+        resteasy
+            .getClient()
+            .target(resteasy.getBaseUriBuilder().path(IdentityResource.class))
+            .request()
+            .get(String.class);
+    assertThat(anonymous).isEqualTo("Hello null");
+  }
+
   public static class CustomUserPrincipal implements UserPrincipal {
     @Override
     public String getName() {
@@ -81,4 +136,34 @@ public class TestSecurityFilterTest {
       return "OK";
     }
   }
+
+  @Path("/identity")
+  public static class IdentityResource {
+    @Context SecurityContext securityContext;
+    @Context Greeting greeting;
+
+    @GET
+    public String get() {
+      Principal userPrincipal = securityContext.getUserPrincipal();
+      return greeting.get() + " " + (userPrincipal == null ? null : userPrincipal.getName());
+    }
+  }
+
+  public interface Greeting {
+    String get();
+  }
+
+  public static class DefaultGreeting implements Greeting {
+    @Override
+    public String get() {
+      return "Hello";
+    }
+  }
+
+  public static class CustomGreeting implements Greeting {
+    @Override
+    public String get() {
+      return "Howdy";
+    }
+  }
 }